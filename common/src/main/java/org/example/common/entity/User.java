@@ -2,6 +2,7 @@ package org.example.common.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.example.common.id.GeneratedUuidV7;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -18,7 +19,7 @@ import java.util.UUID;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     @Column(columnDefinition = "uuid", updatable = false, nullable = false)
     private UUID id;
 
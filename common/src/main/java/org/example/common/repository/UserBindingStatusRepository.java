@@ -1,6 +1,7 @@
 package org.example.common.repository;
 
 import org.example.common.entity.UserBindingStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,6 +10,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -21,6 +23,16 @@ public interface UserBindingStatusRepository extends JpaRepository<UserBindingSt
     @Query("SELECT ubs FROM UserBindingStatus ubs WHERE ubs.phoneNumber = :phone OR ubs.phoneNumber = REPLACE(:phone, '+', '')")
     Optional<UserBindingStatus> findByPhoneNumberNormalized(@Param("phone") String phoneNumber);
 
+    /**
+     * Страница телефонов со статусом подключения status после after (keyset по уникальному phone_number)
+     */
+    @Query("SELECT ubs.phoneNumber FROM UserBindingStatus ubs " +
+            "WHERE ubs.bindingStatus = :status AND ubs.phoneNumber > :after " +
+            "ORDER BY ubs.phoneNumber")
+    List<String> findPhoneNumbersByStatusAfter(@Param("status") UserBindingStatus.BindingStatus status,
+                                               @Param("after") String after,
+                                               Pageable pageable);
+
     // Добавляем новый метод для создания или обновления статуса
     @Modifying
     @Query("UPDATE UserBindingStatus ubs SET ubs.bindingStatus = :status, ubs.boundAt = :boundAt, ubs.partnerConnected = true WHERE ubs.phoneNumber = :phoneNumber")
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,6 +18,17 @@ public interface UserRepository extends JpaRepository<User, UUID> {
 
     @Query("SELECT u FROM User u WHERE u.phoneNumber = :phone OR u.phoneNumber = REPLACE(:phone, '+', '')")
     Optional<User> findByPhoneNumberNormalized(@Param("phone") String phoneNumber);
+
+    /**
+     * Пакетный поиск id пользователей по телефонам (без загрузки ролей).
+     */
+    @Query("SELECT u.id AS id, u.phoneNumber AS phoneNumber FROM User u WHERE u.phoneNumber IN :phones")
+    List<UserPhoneView> findIdsByPhoneNumberIn(@Param("phones") Collection<String> phoneNumbers);
+
+    interface UserPhoneView {
+        UUID getId();
+        String getPhoneNumber();
+    }
 }
 
 
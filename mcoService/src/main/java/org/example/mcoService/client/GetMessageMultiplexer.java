@@ -0,0 +1,508 @@
+package org.example.mcoService.client;
+
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.config.McoProperties;
+import org.example.mcoService.config.McoProperties.PollingProfile;
+import org.example.mcoService.dto.response.DrPlatformError;
+import org.example.mcoService.dto.response.GetMessageResponse;
+import org.example.mcoService.exception.GlobalExceptionHandler;
+import org.example.mcoService.exception.McoErrorCode;
+import org.example.mcoService.exception.McoException;
+import org.example.mcoService.exception.RetryableMcoException;
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+import org.springframework.stereotype.Component;
+import org.springframework.ws.client.core.WebServiceTemplate;
+import org.springframework.ws.soap.SoapMessage;
+import org.w3c.dom.Element;
+
+import javax.xml.transform.dom.DOMSource;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общий реестр ожидающих MessageId асинхронных операций ФНС.
+ * Вместо отдельного цикла опроса на каждый MessageId все ожидающие сообщения
+ * стоят в одной очереди по времени следующего опроса, а фиксированный набор
+ * потоков вызывает GetMessage с общим ограничением частоты и завершает future ожидающих.
+ * <p>
+ * Расписание опроса берется из профиля операции ({@code mco.polling.operations}):
+ * первый опрос - через медиану недавних завершений этой операции (пока истории нет -
+ * через initial-delay), дальше пауза растет экспоненциально до max-interval со случайным
+ * отклонением. Быстрые операции так замечаются раньше, а долгие не опрашиваются впустую.
+ * Момент завершения известен лишь с точностью до интервала между последним PROCESSING
+ * и COMPLETED, поэтому в историю идет середина этого интервала: время обнаружения
+ * завершения не меньше первой задержки, и медиана по нему могла бы только расти.
+ */
+@Slf4j
+@Component
+public class GetMessageMultiplexer {
+
+    private final WebServiceTemplate webServiceTemplate;
+    private final McoProperties mcoProperties;
+    private final Jaxb2Marshaller marshaller;
+    private final McoProperties.Polling polling;
+    private final MeterRegistry registry;
+    private final RateLimiter rateLimiter;
+
+    private final Map<String, Pending<?>> pendingById = new ConcurrentHashMap<>();
+    private final Map<String, CompletionHistory> historyByOperation = new ConcurrentHashMap<>();
+    private final DelayQueue<Pending<?>> pollQueue = new DelayQueue<>();
+    private final ExecutorService workers;
+
+    public GetMessageMultiplexer(WebServiceTemplate webServiceTemplate,
+                                 McoProperties mcoProperties,
+                                 Jaxb2Marshaller marshaller,
+                                 MeterRegistry registry) {
+        this.webServiceTemplate = webServiceTemplate;
+        this.mcoProperties = mcoProperties;
+        this.marshaller = marshaller;
+        this.polling = mcoProperties.getPolling();
+        this.registry = registry;
+        this.rateLimiter = RateLimiter.create(polling.getMaxRequestsPerSecond());
+        this.workers = Executors.newFixedThreadPool(Math.max(1, polling.getWorkers()), r -> {
+            Thread thread = new Thread(r, "mco-get-message-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("mco.get-message.pending", pendingById, Map::size)
+                .description("Сколько MessageId ожидают результата в GetMessage")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < Math.max(1, polling.getWorkers()); i++) {
+            workers.execute(this::pollLoop);
+        }
+        log.info("Опрос GetMessage запущен: потоков {}, не более {} вызовов/сек, профили операций: {}",
+                polling.getWorkers(), polling.getMaxRequestsPerSecond(), polling.getOperations().keySet());
+    }
+
+    /**
+     * Один опрос GetMessage.
+     * Возвращает результат, null - операция еще обрабатывается; исключение завершает ожидание.
+     * Результат-{@link AutoCloseable}, который уже некому отдать, закрывается реестром.
+     */
+    @FunctionalInterface
+    public interface PollAttempt<T> {
+        T poll() throws Exception;
+    }
+
+    /**
+     * Поставить MessageId на опрос.
+     * Повторная регистрация того же MessageId не создает второй опрос. Каждый ожидающий
+     * получает свою копию future: ее отмена не влияет на остальных, а когда отменили все,
+     * MessageId снимается с опроса и больше не расходует лимит запросов.
+     *
+     * @return future с ответом; завершается исключением McoException/RuntimeException при ошибке или таймауте
+     */
+    public <T> CompletableFuture<T> register(String messageId, Class<T> responseClass) {
+        return register(messageId, responseClass, operationOf(responseClass),
+                () -> pollUnmarshalled(messageId, responseClass));
+    }
+
+    /**
+     * Поставить MessageId на опрос со своим разбором ответа GetMessage
+     * (например, потоковым, см. {@link ReceiptTapeStreamReader}).
+     * Расписание, ограничение частоты и метрики - общие с остальными операциями.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> register(String messageId, Class<T> responseClass,
+                                             String operation, PollAttempt<T> attempt) {
+        Pending<T> pending = new Pending<>(messageId, responseClass, operation,
+                polling.profileFor(operation), attempt);
+        // Подписчики считаются под блокировкой ключа, чтобы не подключиться к уже снятому с опроса MessageId
+        Pending<?> existing = pendingById.compute(messageId, (id, current) -> {
+            if (current == null || current.result.isDone()) {
+                return pending;
+            }
+            if (current.responseClass == responseClass) {
+                current.subscribers++;
+            }
+            return current;
+        });
+        if (existing != pending) {
+            if (existing.responseClass != responseClass) {
+                throw new IllegalStateException("MessageId " + messageId + " уже ожидает ответ типа "
+                        + existing.responseClass.getSimpleName());
+            }
+            log.debug("MessageId {} уже ожидает результата, подключаемся к опросу", messageId);
+            return subscribe((Pending<T>) existing);
+        }
+
+        Duration firstDelay = firstDelay(pending);
+        pending.scheduleNext(firstDelay);
+        log.info("MessageId {} ({}) поставлен на опрос, первый опрос через {} мс, ожидающих: {}",
+                messageId, operation, firstDelay.toMillis(), pendingById.size());
+        pending.result.whenComplete((response, error) -> finish(pending, error));
+        pollQueue.put(pending);
+        return subscribe(pending);
+    }
+
+    /**
+     * Копия future для одного ожидающего. Отмена копии последним подписчиком
+     * отменяет сам опрос и убирает MessageId из очереди.
+     */
+    private <T> CompletableFuture<T> subscribe(Pending<T> pending) {
+        CompletableFuture<T> copy = pending.result.copy();
+        copy.whenComplete((response, error) -> {
+            if (copy.isCancelled()) {
+                unsubscribe(pending);
+            }
+        });
+        return copy;
+    }
+
+    private void unsubscribe(Pending<?> pending) {
+        boolean[] last = {false};
+        // Под блокировкой того же ключа, что и подключение в register
+        pendingById.compute(pending.messageId, (id, current) -> {
+            last[0] = --pending.subscribers == 0;
+            return current == pending && last[0] ? null : current;
+        });
+        if (!last[0]) {
+            return;
+        }
+        if (pending.result.cancel(false)) {
+            log.info("MessageId {} ({}) больше никто не ожидает, опрос остановлен", pending.messageId, pending.operation);
+        } else {
+            // Результат пришел одновременно с отменой последнего ожидающего
+            pending.result.thenAccept(response -> {
+                if (response instanceof AutoCloseable closeable) {
+                    closeQuietly(closeable);
+                }
+            });
+        }
+    }
+
+    /** Сколько MessageId сейчас ожидают результата */
+    public int pendingCount() {
+        return pendingById.size();
+    }
+
+    private void pollLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Pending<?> pending;
+            try {
+                pending = pollQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (pending.result.isDone()) {
+                // Ожидающий отменил future - дальше не опрашиваем
+                continue;
+            }
+
+            rateLimiter.acquire();
+            if (poll(pending) && !pending.result.isDone()) {
+                pending.scheduleNext(nextDelay(pending));
+                pollQueue.put(pending);
+            }
+        }
+    }
+
+    /**
+     * Один вызов GetMessage.
+     *
+     * @return нужно ли опросить MessageId еще раз
+     */
+    private <T> boolean poll(Pending<T> pending) {
+        int attempt = ++pending.attempts;
+        try {
+            log.debug("MessageId {} ({}): попытка {} - опрос результата...",
+                    pending.messageId, pending.operation, attempt);
+            registry.counter("mco.get-message.polls", "operation", pending.operation).increment();
+            T response = pending.attempt.poll();
+            if (response != null) {
+                log.info("MessageId {} обработан успешно за {} попыток", pending.messageId, attempt);
+                if (!pending.result.complete(response) && response instanceof AutoCloseable closeable) {
+                    // Ожидающие успели отменить future - открытый ответ больше никому не нужен
+                    closeQuietly(closeable);
+                }
+                return false;
+            }
+            pending.lastProcessingAt = System.nanoTime();
+        } catch (McoException e) {
+            pending.result.completeExceptionally(e);
+            return false;
+        } catch (RuntimeException e) {
+            log.error("Ошибка при опросе результата на попытке {}: {}", attempt, e.getMessage());
+            pending.result.completeExceptionally(e);
+            return false;
+        } catch (Exception e) {
+            log.error("Непредвиденная ошибка на попытке {}: {}", attempt, e.getMessage(), e);
+            pending.result.completeExceptionally(new RuntimeException("Непредвиденная ошибка при получении результата", e));
+            return false;
+        }
+
+        if (pending.remaining().isZero()) {
+            long waitedSeconds = Duration.ofNanos(System.nanoTime() - pending.registeredAt).toSeconds();
+            log.error("Превышено время ожидания результата по MessageId {} ({} сек)", pending.messageId, waitedSeconds);
+            pending.result.completeExceptionally(new RetryableMcoException(
+                    "Таймаут ожидания результата от МЧО после " + waitedSeconds + " секунд",
+                    McoErrorCode.OPENAPI_PARTNER_API_INTERNAL_ERROR
+            ));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Опрос через WebServiceTemplate с разбором ответа в JAXB-объекты.
+     *
+     * @return содержимое ответа или null, если операция еще обрабатывается
+     */
+    private <T> T pollUnmarshalled(String messageId, Class<T> responseClass) {
+        Object response = requestMessage(messageId);
+
+        if (response instanceof GetMessageResponse getMessageResponse) {
+            String status = getMessageResponse.getProcessingStatus();
+            log.debug("Статус обработки: {}", status);
+            if ("COMPLETED".equals(status)) {
+                return extractContent(getMessageResponse, responseClass);
+            } else if ("FAILED".equals(status)) {
+                log.error("Запрос завершился с ошибкой");
+                throw new RuntimeException("Обработка завершилась ошибкой на сервере");
+            } else if ("PROCESSING".equals(status)) {
+                log.debug("Обработка еще не завершена, ожидаем...");
+            } else {
+                log.warn("Неизвестный статус: {}", status);
+            }
+            return null;
+        } else if (response instanceof DrPlatformError error) {
+            log.error("Получена ошибка от ФНС: code = {}, message = {}", error.getCode(), error.getMessage());
+            GlobalExceptionHandler.processDrPlatformError(error);
+            throw new AssertionError("handleDrPlatformError должен был выбросить исключение");
+        } else {
+            log.error("Неожиданный тип ответа: {}", response != null ? response.getClass().getName() : "null");
+            throw new RuntimeException("Неожиданный тип ответа");
+        }
+    }
+
+    /**
+     * Первый опрос - через медиану недавних завершений операции, если история набрана.
+     */
+    private Duration firstDelay(Pending<?> pending) {
+        CompletionHistory history = historyByOperation.get(pending.operation);
+        Duration median = history != null ? history.median(polling.getMinHistorySamples()) : null;
+        Duration delay = median != null ? median : pending.profile.getInitialDelay();
+        return min(delay, pending.profile.getTimeout());
+    }
+
+    /**
+     * Пауза до следующего опроса: текущий интервал со случайным отклонением,
+     * сам интервал растет в multiplier раз до max-interval. Последний опрос - ровно в момент таймаута.
+     */
+    private Duration nextDelay(Pending<?> pending) {
+        PollingProfile profile = pending.profile;
+        long interval = pending.intervalNanos;
+        pending.intervalNanos = Math.min(
+                (long) (interval * Math.max(1.0, profile.getMultiplier())),
+                profile.getMaxInterval().toNanos());
+
+        double jitter = Math.min(1.0, Math.max(0.0, profile.getJitter()));
+        double factor = 1.0 + jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        return min(Duration.ofNanos((long) (interval * factor)), pending.remaining());
+    }
+
+    private void finish(Pending<?> pending, Throwable error) {
+        pendingById.remove(pending.messageId, pending);
+        // Отмененный MessageId может еще стоять в очереди - не тратим на него опрос
+        pollQueue.remove(pending);
+        long now = System.nanoTime();
+        long elapsed = now - pending.registeredAt;
+
+        String outcome;
+        if (error == null) {
+            outcome = "completed";
+            long lastProcessingAt = pending.lastProcessingAt;
+            long estimated = lastProcessingAt + (now - lastProcessingAt) / 2 - pending.registeredAt;
+            historyByOperation
+                    .computeIfAbsent(pending.operation, op -> new CompletionHistory(polling.getHistorySize()))
+                    .record(estimated);
+        } else if (error instanceof CancellationException) {
+            outcome = "cancelled";
+        } else if (error instanceof RetryableMcoException) {
+            outcome = "timeout";
+        } else {
+            outcome = "failed";
+        }
+        Timer.builder("mco.get-message.completion")
+                .description("Время от постановки MessageId на опрос до результата")
+                .tag("operation", pending.operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Имя операции для профиля опроса: PostBindPartnerResponse - post-bind-partner.
+     * SOAPAction у всех операций один (SendMessageRequest), поэтому операция определяется по типу ответа.
+     */
+    static String operationOf(Class<?> responseClass) {
+        String name = responseClass.getSimpleName();
+        if (name.endsWith("Response")) {
+            name = name.substring(0, name.length() - "Response".length());
+        }
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1-$2").toLowerCase(Locale.ROOT);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Ошибка закрытия невостребованного ответа: {}", e.getMessage());
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private Object requestMessage(String messageId) {
+        return webServiceTemplate.sendSourceAndReceive(
+                mcoProperties.getApi().getBaseUrl(),
+                GetMessageRequestTemplate.sourceFor(messageId),
+                message -> {
+                    if (message instanceof SoapMessage soapMessage) {
+                        soapMessage.setSoapAction("urn:GetMessageRequest");
+                    }
+                },
+                marshaller::unmarshal
+        );
+    }
+
+    private <T> T extractContent(GetMessageResponse getMessageResponse, Class<T> responseClass) {
+        if (getMessageResponse.getMessage() == null || getMessageResponse.getMessage().getContent() == null) {
+            throw new RuntimeException("Ответ пуст");
+        }
+
+        Object content = getMessageResponse.getMessage().getContent();
+        if (content instanceof Element element) {
+            log.debug("Парсим Element в {}", responseClass.getSimpleName());
+            Object unmarshalled;
+            try {
+                unmarshalled = marshaller.unmarshal(new DOMSource(element));
+            } catch (Exception e) {
+                log.error("Ошибка парсинга Element: {}", e.getMessage());
+                throw new RuntimeException("Ошибка парсинга ответа", e);
+            }
+            if (!responseClass.isInstance(unmarshalled)) {
+                throw new RuntimeException(
+                        "Неожиданный тип ответа: " + unmarshalled.getClass().getName() +
+                                ", ожидался: " + responseClass.getName()
+                );
+            }
+            log.debug("Успешно распарсили в {}", responseClass.getSimpleName());
+            return responseClass.cast(unmarshalled);
+        } else if (responseClass.isInstance(content)) {
+            log.debug("Контент уже нужного типа: {}", responseClass.getSimpleName());
+            return responseClass.cast(content);
+        } else {
+            throw new RuntimeException(
+                    "Не удается обработать контент типа: " + content.getClass().getName()
+            );
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        pendingById.values().forEach(pending -> pending.result.cancel(false));
+    }
+
+    /** Ожидающий MessageId; в очереди упорядочен по времени следующего опроса */
+    private static final class Pending<T> implements Delayed {
+        final String messageId;
+        final Class<T> responseClass;
+        final String operation;
+        final PollingProfile profile;
+        final PollAttempt<T> attempt;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long registeredAt = System.nanoTime();
+        volatile int attempts;
+        /** Число ожидающих с неотмененной копией future; меняется только внутри compute по ключу MessageId */
+        int subscribers = 1;
+        volatile long intervalNanos;
+        volatile long nextPollAt = registeredAt;
+        /** Время последнего ответа PROCESSING (до первого опроса - время регистрации) */
+        volatile long lastProcessingAt = registeredAt;
+
+        Pending(String messageId, Class<T> responseClass, String operation,
+                PollingProfile profile, PollAttempt<T> attempt) {
+            this.messageId = messageId;
+            this.responseClass = responseClass;
+            this.operation = operation;
+            this.profile = profile;
+            this.attempt = attempt;
+            this.intervalNanos = profile.getMinInterval().toNanos();
+        }
+
+        void scheduleNext(Duration delay) {
+            nextPollAt = System.nanoTime() + delay.toNanos();
+        }
+
+        /** Сколько осталось до таймаута */
+        Duration remaining() {
+            long left = profile.getTimeout().toNanos() - (System.nanoTime() - registeredAt);
+            return Duration.ofNanos(Math.max(0, left));
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(nextPollAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /** Последние времена завершения операции (кольцевой буфер) */
+    private static final class CompletionHistory {
+        private final long[] samples;
+        private int next;
+        private int count;
+
+        CompletionHistory(int size) {
+            this.samples = new long[Math.max(1, size)];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /** Медиана или null, если завершений меньше minSamples */
+        synchronized Duration median(int minSamples) {
+            if (count == 0 || count < minSamples) {
+                return null;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            return Duration.ofNanos(sorted[count / 2]);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.mcoService.client;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Заготовка тела GetMessageRequest.
+ * Разметка вокруг MessageId закодирована один раз; на каждый опрос
+ * собирается только массив байт с подставленным MessageId, без DOM и фабрик парсера.
+ * Потокобезопасна: после создания ничего не изменяется.
+ */
+final class GetMessageRequestTemplate {
+
+    static final String NAMESPACE =
+            "urn://x-artefacts-gnivc-ru/inplat/servin/OpenApiAsyncMessageConsumerService/types/1.0";
+
+    private static final byte[] PREFIX = ("<GetMessageRequest xmlns=\"" + NAMESPACE + "\"><MessageId>")
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "</MessageId></GetMessageRequest>"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ENVELOPE_PREFIX = ("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Header/><soapenv:Body>").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ENVELOPE_SUFFIX = "</soapenv:Body></soapenv:Envelope>"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private GetMessageRequestTemplate() {
+    }
+
+    /** Тело SOAP-запроса для WebServiceTemplate */
+    static Source sourceFor(String messageId) {
+        return new StreamSource(new ByteArrayInputStream(concat(
+                PREFIX, escape(messageId).getBytes(StandardCharsets.UTF_8), SUFFIX)));
+    }
+
+    /** SOAP 1.1 конверт целиком - для запросов мимо WebServiceTemplate */
+    static byte[] envelopeFor(String messageId) {
+        return concat(ENVELOPE_PREFIX, PREFIX, escape(messageId).getBytes(StandardCharsets.UTF_8), SUFFIX, ENVELOPE_SUFFIX);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * Экранирование спецсимволов XML. MessageId от ФНС - UUID,
+     * поэтому обычно возвращается исходная строка без копирования.
+     */
+    static String escape(String value) {
+        int i = 0;
+        while (i < value.length() && !needsEscape(value.charAt(i))) {
+            i++;
+        }
+        if (i == value.length()) {
+            return value;
+        }
+
+        StringBuilder escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&apos;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '&' || c == '<' || c == '>' || c == '"' || c == '\'';
+    }
+}
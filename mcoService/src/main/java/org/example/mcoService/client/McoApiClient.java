@@ -1,15 +1,20 @@
 package org.example.mcoService.client;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.mcoService.dto.request.*;
 import org.example.mcoService.dto.response.*;
+import org.example.mcoService.service.ReceiptPipelineMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
@@ -20,6 +25,12 @@ public class McoApiClient {
     @Autowired
     private McoSoapClient soapClient;
 
+    @Autowired
+    private ReceiptPipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private ReceiptTapeStreamReader tapeStreamReader;
+
     public GetBindPartnerStatusResponse getBindRequestStatus(List<String> requestIds) {
         log.info("Запрос статуса заявок, количество: {}", requestIds.size());
 
@@ -47,7 +58,11 @@ public class McoApiClient {
     }
 
     public GetBindPartnerStatusResponse getBindRequestStatusSync(List<String> requestIds) {
-        log.info("Синхронный запрос статуса заявок, количество: {}", requestIds.size());
+        return await(getBindRequestStatusAsync(requestIds));
+    }
+
+    public CompletableFuture<GetBindPartnerStatusResponse> getBindRequestStatusAsync(List<String> requestIds) {
+        log.info("Запрос статуса заявок с ожиданием результата, количество: {}", requestIds.size());
 
         if (requestIds.isEmpty()) {
             throw new IllegalArgumentException("Список requestIds не может быть пустым");
@@ -74,12 +89,11 @@ public class McoApiClient {
         log.info("Запрос отправлен, MessageId: {}, опрашиваем результат...",
                 messageResponse.getMessageId());
 
-        try {
-            GetBindPartnerStatusResponse response = soapClient.getAsyncResult(
-                    messageResponse.getMessageId(),
-                    GetBindPartnerStatusResponse.class
-            );
-
+        CompletableFuture<GetBindPartnerStatusResponse> result = soapClient.getAsyncResultAsync(
+                messageResponse.getMessageId(),
+                GetBindPartnerStatusResponse.class
+        );
+        return cancellingSource(result, result.thenApply(response -> {
             int statusesCount = response.getStatuses() != null ? response.getStatuses().size() : 0;
             log.info("Получено статусов: {}", statusesCount);
 
@@ -93,11 +107,7 @@ public class McoApiClient {
             }
 
             return response;
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Прервано ожидание результата", e);
-        }
+        }));
     }
 
     public SendMessageResponse registerPartner(
@@ -152,6 +162,17 @@ public class McoApiClient {
             String inn,
             String phone) {
 
+        return await(registerPartnerAsync(name, description, transitionLink, base64Logo, inn, phone));
+    }
+
+    public CompletableFuture<PostPlatformRegistrationResponse> registerPartnerAsync(
+            String name,
+            String description,
+            String transitionLink,
+            String base64Logo,
+            String inn,
+            String phone) {
+
         log.info("Регистрация партнера: {}", name);
 
         SendMessageResponse messageResponse = registerPartner(
@@ -160,20 +181,14 @@ public class McoApiClient {
 
         log.info("Получен MessageId: {}, ожидаем результата...", messageResponse.getMessageId());
 
-        try {
-            PostPlatformRegistrationResponse response =
-                    soapClient.getAsyncResult(
-                            messageResponse.getMessageId(),
-                            PostPlatformRegistrationResponse.class
-                    );
-
+        CompletableFuture<PostPlatformRegistrationResponse> result = soapClient.getAsyncResultAsync(
+                messageResponse.getMessageId(),
+                PostPlatformRegistrationResponse.class
+        );
+        return cancellingSource(result, result.thenApply(response -> {
             log.info("Партнер зарегистрирован, ID: {}", response.getId());
             return response;
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Прервано ожидание результата", e);
-        }
+        }));
     }
 
     public SendMessageResponse bindUser(String phoneNumber, String requestId) {
@@ -234,6 +249,10 @@ public class McoApiClient {
     }
 
     public PostBindPartnerResponse bindUserSync(String phoneNumber, String requestId) {
+        return await(bindUserAsync(phoneNumber, requestId));
+    }
+
+    public CompletableFuture<PostBindPartnerResponse> bindUserAsync(String phoneNumber, String requestId) {
         // Нормализуем телефон - удаляем + для МЧО
         String normalizedPhone = normalizePhoneNumber(phoneNumber);
         
@@ -246,27 +265,95 @@ public class McoApiClient {
 
         log.info("Получен MessageId: {}, начинаем опрос результата...", messageResponse.getMessageId());
 
+        CompletableFuture<PostBindPartnerResponse> result = soapClient.getAsyncResultAsync(
+                messageResponse.getMessageId(),
+                PostBindPartnerResponse.class
+        );
+        return cancellingSource(result, result.whenComplete((response, error) -> {
+            if (error != null) {
+                log.error("Ошибка обработки заявки на стороне ФНС: {}", error.getMessage());
+            } else {
+                log.info("Заявка успешно обработана! Ответ: {}", response);
+            }
+        }));
+    }
+
+    public GetReceiptsTapeResponse getReceiptsSync(String marker) {
+        return await(getReceiptsAsync(marker));
+    }
+
+    public CompletableFuture<GetReceiptsTapeResponse> getReceiptsAsync(String marker) {
+        log.info("Получение ленты чеков с ожиданием результата, маркер: {}", marker);
+
+        String messageId = sendReceiptsTapeRequest(marker);
+
+        Timer.Sample getSample = pipelineMetrics.startTapeFetch();
+        CompletableFuture<GetReceiptsTapeResponse> result = soapClient.getAsyncResultAsync(
+                messageId,
+                GetReceiptsTapeResponse.class
+        );
+        return cancellingSource(result, result.whenComplete((response, error) -> {
+            if (error != null) {
+                log.error("Ошибка получения чеков: {}", error.getMessage());
+                return;
+            }
+            pipelineMetrics.stopTapeGet(getSample);
+            pipelineMetrics.recordRemainingPolls(response.getTotalExpectedRemainingPolls());
+
+            int receiptsCount = response.getReceipts() != null ? response.getReceipts().size() : 0;
+            log.info("Получено чеков: {}", receiptsCount);
+
+            if (response.getNextMarker() != null) {
+                log.debug("NextMarker: {}", response.getNextMarker());
+            }
+        }));
+    }
+
+    /**
+     * Получение порции ленты с потоковым разбором ответа, см. {@link ReceiptTapeStreamReader}.
+     * Ответ дочитывается в вызывающем потоке, чеки передаются в sink пачками по мере чтения.
+     *
+     * @return заголовок порции (NextMarker, TotalExpectedRemainingPolls) без списка чеков
+     */
+    public GetReceiptsTapeResponse streamReceiptsSync(String marker, int chunkSize,
+                                                      Consumer<List<GetReceiptsTapeResponse.Receipt>> sink) {
+        log.info("Потоковое получение ленты чеков, маркер: {}", marker);
+
+        String messageId = sendReceiptsTapeRequest(marker);
+
+        Timer.Sample getSample = pipelineMetrics.startTapeFetch();
+        CompletableFuture<ReceiptTapeStreamReader.TapeStream> opened = tapeStreamReader.open(messageId);
+        ReceiptTapeStreamReader.TapeStream stream;
         try {
-            PostBindPartnerResponse response = soapClient.getAsyncResult(
-                    messageResponse.getMessageId(),
-                    PostBindPartnerResponse.class
-            );
+            stream = await(opened);
+        } catch (RuntimeException e) {
+            // Ответ мог прийти одновременно с прерыванием ожидания
+            opened.thenAccept(ReceiptTapeStreamReader.TapeStream::close);
+            log.error("Ошибка получения чеков: {}", e.getMessage());
+            throw e;
+        }
 
-            log.info("Заявка успешно обработана! Ответ: {}", response);
-            return response;
+        try (stream) {
+            GetReceiptsTapeResponse response = stream.read(chunkSize, sink);
+            pipelineMetrics.stopTapeGet(getSample);
+            pipelineMetrics.recordRemainingPolls(response.getTotalExpectedRemainingPolls());
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Прервано ожидание результата", e);
+            if (response.getNextMarker() != null) {
+                log.debug("NextMarker: {}", response.getNextMarker());
+            }
+            return response;
         } catch (RuntimeException e) {
-            log.error("Ошибка обработки заявки на стороне ФНС: {}", e.getMessage());
+            log.error("Ошибка получения чеков: {}", e.getMessage());
             throw e;
         }
     }
 
-    public GetReceiptsTapeResponse getReceiptsSync(String marker) {
-        log.info("Синхронное получение ленты чеков с маркером: {}", marker);
-
+    /**
+     * SendMessage запроса порции ленты
+     *
+     * @return MessageId для опроса GetMessage
+     */
+    private String sendReceiptsTapeRequest(String marker) {
         GetReceiptsTapeRequest innerRequest = GetReceiptsTapeRequest.builder()
                 .marker(marker != null ? marker : "S_FROM_END")
                 .build();
@@ -275,40 +362,23 @@ public class McoApiClient {
                 .message(new SendMessageRequest.MessageWrapper(innerRequest))
                 .build();
 
+        Timer.Sample sendSample = pipelineMetrics.startTapeFetch();
         SendMessageResponse messageResponse = soapClient.sendSoapRequest(
                 request,
                 SendMessageResponse.class,
                 "SendMessageRequest"
         );
+        pipelineMetrics.stopTapeSend(sendSample);
 
         log.info("Запрос отправлен, MessageId: {}, опрашиваем результат...",
                 messageResponse.getMessageId());
-
-        try {
-            GetReceiptsTapeResponse response = soapClient.getAsyncResult(
-                    messageResponse.getMessageId(),
-                    GetReceiptsTapeResponse.class
-            );
-
-            int receiptsCount = response.getReceipts() != null ? response.getReceipts().size() : 0;
-            log.info("Получено чеков: {}", receiptsCount);
-
-            if (response.getNextMarker() != null) {
-                log.debug("NextMarker: {}", response.getNextMarker());
-            }
-
-            return response;
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.error("Прервано ожидание результата", e);
-            throw new RuntimeException("Прервано ожидание результата", e);
-        } catch (RuntimeException e) {
-            log.error("Ошибка получения чеков: {}", e.getMessage());
-            throw e;
-        }
+        return messageResponse.getMessageId();
     }
 
+    /**
+     * Прочитать ленту до конца. Остановка определяется только TotalExpectedRemainingPolls
+     * и NextMarker; ожидание готовности порции уже есть в опросе GetMessage.
+     */
     public void getAllReceiptsSync() {
         log.info("Начало получения всех чеков");
 
@@ -316,9 +386,8 @@ public class McoApiClient {
         int totalReceipts = 0;
         int iteration = 0;
         boolean hasMore = true;
-        int maxIterations = 50;
 
-        while (hasMore && iteration < maxIterations) {
+        while (hasMore) {
             iteration++;
             log.info("Итерация {}", iteration);
 
@@ -347,24 +416,12 @@ public class McoApiClient {
                     hasMore = hasMore && (remainingPolls > 0);
                 }
 
-                if (hasMore) {
-                    Thread.sleep(500);
-                }
-
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Прервано получение чеков на итерации {}", iteration);
-                break;
             } catch (Exception e) {
                 log.error("Ошибка при получении чеков на итерации {}", iteration, e);
                 break;
             }
         }
 
-        if (iteration >= maxIterations) {
-            log.warn("Достигнуто максимальное количество итераций ({}) - остановка", maxIterations);
-        }
-
         log.info("Завершено: Всего получено {} чеков за {} итераций",
                 totalReceipts, iteration);
     }
@@ -373,6 +430,13 @@ public class McoApiClient {
             String requestId,
             List<String> phoneNumbers) {
 
+        return await(bindUsersBatchAsync(requestId, phoneNumbers));
+    }
+
+    public CompletableFuture<PostBindPartnerBatchResponse> bindUsersBatchAsync(
+            String requestId,
+            List<String> phoneNumbers) {
+
         if (phoneNumbers == null || phoneNumbers.isEmpty()) {
             throw new IllegalArgumentException("Список телефонов не может быть пустым");
         }
@@ -403,12 +467,11 @@ public class McoApiClient {
         log.info("Запрос отправлен, MessageId: {}, опрашиваем результат...",
                 messageResponse.getMessageId());
 
-        try {
-            PostBindPartnerBatchResponse response = soapClient.getAsyncResult(
-                    messageResponse.getMessageId(),
-                    PostBindPartnerBatchResponse.class
-            );
-
+        CompletableFuture<PostBindPartnerBatchResponse> result = soapClient.getAsyncResultAsync(
+                messageResponse.getMessageId(),
+                PostBindPartnerBatchResponse.class
+        );
+        return cancellingSource(result, result.thenApply(response -> {
             int accepted = response.getAcceptedUserIdentifiers() != null ?
                     response.getAcceptedUserIdentifiers().size() : 0;
             int rejected = response.getRejectedUserIdentifiers() != null ?
@@ -417,14 +480,14 @@ public class McoApiClient {
             log.info("Принято: {}, Отклонено: {}", accepted, rejected);
 
             return response;
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Прервано ожидание результата", e);
-        }
+        }));
     }
 
     public GetBindPartnerEventResponse getBindPartnerEvents(String marker) {
+        return await(getBindPartnerEventsAsync(marker));
+    }
+
+    public CompletableFuture<GetBindPartnerEventResponse> getBindPartnerEventsAsync(String marker) {
 
         log.info("Запрос событий с маркером: {}", marker);
 
@@ -445,25 +508,24 @@ public class McoApiClient {
         log.info("Запрос отправлен, MessageId: {}, опрашиваем результат...",
                 messageResponse.getMessageId());
 
-        try {
-            GetBindPartnerEventResponse response = soapClient.getAsyncResult(
-                    messageResponse.getMessageId(),
-                    GetBindPartnerEventResponse.class
-            );
-
+        CompletableFuture<GetBindPartnerEventResponse> result = soapClient.getAsyncResultAsync(
+                messageResponse.getMessageId(),
+                GetBindPartnerEventResponse.class
+        );
+        return cancellingSource(result, result.thenApply(response -> {
             int eventsCount = response.getEvents() != null ? response.getEvents().size() : 0;
             log.info("Получено событий: {}, Новый маркер: {}",
                     eventsCount, response.getMarker());
 
             return response;
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Прервано ожидание результата", e);
-        }
+        }));
     }
 
     public GetUnboundPartnerResponse getUnboundPartners(String marker) {
+        return await(getUnboundPartnersAsync(marker));
+    }
+
+    public CompletableFuture<GetUnboundPartnerResponse> getUnboundPartnersAsync(String marker) {
 
         log.info("Запрос отключившихся пользователей с маркером: {}", marker);
 
@@ -484,12 +546,11 @@ public class McoApiClient {
         log.info("Запрос отправлен, MessageId: {}, опрашиваем результат...",
                 messageResponse.getMessageId());
 
-        try {
-            GetUnboundPartnerResponse response = soapClient.getAsyncResult(
-                    messageResponse.getMessageId(),
-                    GetUnboundPartnerResponse.class
-            );
-
+        CompletableFuture<GetUnboundPartnerResponse> result = soapClient.getAsyncResultAsync(
+                messageResponse.getMessageId(),
+                GetUnboundPartnerResponse.class
+        );
+        return cancellingSource(result, result.thenApply(response -> {
             int unboundsCount = response.getUnbounds() != null ? response.getUnbounds().size() : 0;
             log.info("Отключившихся: {}, HasMore: {}, NextMarker: {}",
                     unboundsCount, response.getHasMore(), response.getNextMarker());
@@ -504,11 +565,7 @@ public class McoApiClient {
             }
 
             return response;
-
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("Прервано ожидание результата", e);
-        }
+        }));
     }
 
     public PostNotificationResponse sendNotification(
@@ -521,6 +578,20 @@ public class McoApiClient {
             String externalItemId,
             String externalItemUrl) {
 
+        return await(sendNotificationAsync(requestId, phoneNumber, title, message, shortMessage,
+                category, externalItemId, externalItemUrl));
+    }
+
+    public CompletableFuture<PostNotificationResponse> sendNotificationAsync(
+            String requestId,
+            String phoneNumber,
+            String title,
+            String message,
+            String shortMessage,
+            String category,
+            String externalItemId,
+            String externalItemUrl) {
+
         log.info("Отправка уведомления пользователю: {}, категория: {}", phoneNumber, category);
 
         PostNotificationRequest innerRequest = PostNotificationRequest.builder()
@@ -547,20 +618,48 @@ public class McoApiClient {
         log.info("Запрос отправлен, MessageId: {}, опрашиваем результат...",
                 messageResponse.getMessageId());
 
-        try {
-            PostNotificationResponse response = soapClient.getAsyncResult(
-                    messageResponse.getMessageId(),
-                    PostNotificationResponse.class
-            );
-
+        CompletableFuture<PostNotificationResponse> result = soapClient.getAsyncResultAsync(
+                messageResponse.getMessageId(),
+                PostNotificationResponse.class
+        );
+        return cancellingSource(result, result.thenApply(response -> {
             log.info("Уведомление отправлено, RequestId: {}, HandledAt: {}",
                     response.getRequestId(), response.getHandledAt());
 
             return response;
+        }));
+    }
 
+    /**
+     * Отмена производного future (таймаут или прерывание ожидающего) отменяет и исходный,
+     * иначе MessageId так и остался бы в опросе GetMessage и расходовал лимит запросов.
+     */
+    private static <S, T> CompletableFuture<T> cancellingSource(CompletableFuture<S> source,
+                                                                CompletableFuture<T> derived) {
+        derived.whenComplete((response, error) -> {
+            if (derived.isCancelled()) {
+                source.cancel(false);
+            }
+        });
+        return derived;
+    }
+
+    /**
+     * Дождаться результата async-варианта в вызывающем потоке.
+     * Ошибки ФНС (McoException и др.) пробрасываются как есть, без обертки.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
         } catch (InterruptedException e) {
+            future.cancel(false);
             Thread.currentThread().interrupt();
             throw new RuntimeException("Прервано ожидание результата", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("Ошибка получения результата", e.getCause());
         }
     }
 
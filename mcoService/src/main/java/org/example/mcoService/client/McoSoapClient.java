@@ -4,19 +4,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.mcoService.config.McoProperties;
 import org.example.mcoService.dto.response.DrPlatformError;
-import org.example.mcoService.dto.response.GetMessageResponse;
 import org.example.mcoService.exception.*;
-import org.springframework.oxm.jaxb.Jaxb2Marshaller;
 import org.springframework.stereotype.Component;
 import org.springframework.ws.client.core.WebServiceTemplate;
 import org.springframework.ws.soap.SoapMessage;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.dom.DOMSource;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 
 @Slf4j
@@ -26,7 +21,7 @@ public class McoSoapClient {
 
     private final WebServiceTemplate webServiceTemplate;
     private final McoProperties mcoProperties;
-    private final Jaxb2Marshaller marshaller;
+    private final GetMessageMultiplexer getMessageMultiplexer;
 
     public <T> T sendSoapRequest(Object request, Class<T> responseClass, String soapAction) {
         try {
@@ -113,116 +108,35 @@ public class McoSoapClient {
         }
     }
 
+    /**
+     * Дождаться результата асинхронной операции ФНС в вызывающем потоке.
+     * Обертка над {@link #getAsyncResultAsync}: сам опрос идет в общем реестре MessageId.
+     */
     public <T> T getAsyncResult(String messageId, Class<T> responseClass) throws InterruptedException {
-        int maxAttempts = 30;
-        int attempt = 0;
-        log.info("Начинаем опрос результата по MessageId: {}", messageId);
-        log.info("Максимум попыток: {}, интервал: 2 сек, общее время: {} сек",
-                maxAttempts, maxAttempts * 2);
-        while (attempt < maxAttempts) {
-            try {
-                attempt++;
-                log.debug("Попытка {}/{} - опрос результата...", attempt, maxAttempts);
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                factory.setNamespaceAware(true);
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                Document doc = builder.newDocument();
-                Element getMessageRequest = doc.createElementNS(
-                        "urn://x-artefacts-gnivc-ru/inplat/servin/OpenApiAsyncMessageConsumerService/types/1.0",
-                        "GetMessageRequest"
-                );
-                doc.appendChild(getMessageRequest);
-                Element messageIdElement = doc.createElementNS(
-                        "urn://x-artefacts-gnivc-ru/inplat/servin/OpenApiAsyncMessageConsumerService/types/1.0",
-                        "MessageId"
-                );
-                messageIdElement.setTextContent(messageId);
-                getMessageRequest.appendChild(messageIdElement);
-                Object response = webServiceTemplate.sendSourceAndReceive(
-                        mcoProperties.getApi().getBaseUrl(),
-                        new DOMSource(doc),
-                        message -> {
-                            if (message instanceof SoapMessage soapMessage) {
-                                soapMessage.setSoapAction("urn:GetMessageRequest");
-                            }
-                        },
-                        marshaller::unmarshal
-                );
-                if (response instanceof GetMessageResponse getMessageResponse) {
-                    String status = getMessageResponse.getProcessingStatus();
-                    log.debug("Статус обработки: {}", status);
-                    if ("COMPLETED".equals(status)) {
-                        log.info("Запрос обработан успешно за {} попыток ({} сек)",
-                                attempt, attempt * 2);
-                        if (getMessageResponse.getMessage() != null &&
-                                getMessageResponse.getMessage().getContent() != null) {
-                            Object content = getMessageResponse.getMessage().getContent();
-                            if (content instanceof Element element) {
-                                log.debug("Парсим Element в {}", responseClass.getSimpleName());
-                                try {
-                                    DOMSource source = new DOMSource(element);
-                                    Object unmarshalled = marshaller.unmarshal(source);
-                                    if (responseClass.isInstance(unmarshalled)) {
-                                        log.debug("Успешно распарсили в {}", responseClass.getSimpleName());
-                                        return responseClass.cast(unmarshalled);
-                                    } else {
-                                        throw new RuntimeException(
-                                                "Неожиданный тип ответа: " + unmarshalled.getClass().getName() +
-                                                        ", ожидался: " + responseClass.getName()
-                                        );
-                                    }
-                                } catch (Exception e) {
-                                    log.error("Ошибка парсинга Element: {}", e.getMessage());
-                                    throw new RuntimeException("Ошибка парсинга ответа", e);
-                                }
-                            } else if (responseClass.isInstance(content)) {
-                                log.debug("Контент уже нужного типа: {}", responseClass.getSimpleName());
-                                return responseClass.cast(content);
-                            } else {
-                                throw new RuntimeException(
-                                        "Не удается обработать контент типа: " + content.getClass().getName()
-                                );
-                            }
-                        } else {
-                            throw new RuntimeException("Ответ пуст");
-                        }
-                    } else if ("PROCESSING".equals(status)) {
-                        log.debug("Обработка еще не завершена, ожидаем...");
-                        Thread.sleep(2000);
-                    } else if ("FAILED".equals(status)) {
-                        log.error("Запрос завершился с ошибкой");
-                        throw new RuntimeException("Обработка завершилась ошибкой на сервере");
-                    } else {
-                        log.warn("Неизвестный статус: {}", status);
-                        Thread.sleep(2000);
-                    }
-                } else if (response instanceof DrPlatformError error) {
-                    log.error("Получена ошибка от ФНС: code = {}, message = {}", error.getCode(), error.getMessage());
-                    GlobalExceptionHandler.processDrPlatformError(error);
-                    throw new AssertionError("handleDrPlatformError должен был выбросить исключение");
-                } else {
-                    log.error("Неожиданный тип ответа: {}", response != null ? response.getClass().getName() : "null");
-                    throw new RuntimeException("Неожиданный тип ответа");
-                }
-            } catch (InterruptedException e) {
-                log.error("Прервано ожидание результата");
-                Thread.currentThread().interrupt();
-                throw e;
-            } catch (McoException e) {
-                throw e;
-            } catch (RuntimeException e) {
-                log.error("Ошибка при опросе результата на попытке {}: {}", attempt, e.getMessage());
-                throw e;
-            } catch (Exception e) {
-                log.error("Непредвиденная ошибка на попытке {}: {}", attempt, e.getMessage(), e);
-                throw new RuntimeException("Непредвиденная ошибка при получении результата", e);
+        CompletableFuture<T> result = getAsyncResultAsync(messageId, responseClass);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            log.error("Прервано ожидание результата");
+            result.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw new RuntimeException("Непредвиденная ошибка при получении результата", e.getCause());
         }
-        log.error("Превышено время ожидания результата ({} сек)", maxAttempts * 2);
-        throw new RetryableMcoException(
-                "Таймаут ожидания результата от МЧО после " + (maxAttempts * 2) + " секунд",
-                McoErrorCode.OPENAPI_PARTNER_API_INTERNAL_ERROR
-        );
+    }
+
+    /**
+     * Опрос результата асинхронной операции ФНС без блокировки вызывающего потока.
+     * MessageId ставится в общий реестр {@link GetMessageMultiplexer}, который опрашивает
+     * GetMessage по всем ожидающим сообщениям с общим ограничением частоты.
+     *
+     * @return future с ответом; завершается исключением McoException/RuntimeException при ошибке или таймауте
+     */
+    public <T> CompletableFuture<T> getAsyncResultAsync(String messageId, Class<T> responseClass) {
+        return getMessageMultiplexer.register(messageId, responseClass);
     }
 
     public void someMethod() {
@@ -0,0 +1,415 @@
+package org.example.mcoService.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.example.mcoService.config.McoProperties;
+import org.example.mcoService.dto.response.DrPlatformError;
+import org.example.mcoService.dto.response.GetReceiptsTapeResponse;
+import org.example.mcoService.exception.GlobalExceptionHandler;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение ответа GetMessage с порцией ленты чеков.
+ * Ответ WebServiceTemplate целиком лежит в памяти несколько раз (SAAJ DOM, DOMSource,
+ * JAXB с byte[] на каждый чек), поэтому для ленты GetMessage отправляется напрямую
+ * через HttpClient, а тело разбирается StAX по мере чтения из сокета:
+ * Json каждого чека декодируется из base64 по кускам текста, готовые чеки
+ * отдаются обработчику пачками. В памяти одновременно только текущая пачка.
+ * Поток опроса GetMessage только дожидается ответа с содержимым, дальше
+ * ответ дочитывает получатель, поэтому обработка пачек не задерживает опрос остальных MessageId.
+ */
+@Slf4j
+@Component
+public class ReceiptTapeStreamReader {
+
+    private static final String TAPE_NAMESPACE = "urn://x-artefacts-gnivc-ru/ais3/DR/DrPartnersIntegrationService/types/1.0";
+    private static final String OPERATION = GetMessageMultiplexer.operationOf(GetReceiptsTapeResponse.class);
+    private static final ContentType SOAP_CONTENT_TYPE = ContentType.create("text/xml", StandardCharsets.UTF_8);
+
+    private final HttpClient httpClient;
+    private final McoProperties mcoProperties;
+    private final GetMessageMultiplexer getMessageMultiplexer;
+    private final XMLInputFactory xmlInputFactory;
+
+    public ReceiptTapeStreamReader(HttpClient httpClient,
+                                   McoProperties mcoProperties,
+                                   GetMessageMultiplexer getMessageMultiplexer) {
+        this.httpClient = httpClient;
+        this.mcoProperties = mcoProperties;
+        this.getMessageMultiplexer = getMessageMultiplexer;
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Поставить MessageId порции ленты на опрос в общий реестр GetMessage.
+     * Поток опроса читает ответ только до начала содержимого и сразу освобождается,
+     * сами чеки разбирает получатель {@link TapeStream} в своем потоке:
+     * медленный обработчик пачек притормаживает чтение из сокета, но не опрос остальных MessageId.
+     *
+     * @return открытый ответ с порцией; его нужно дочитать или закрыть
+     */
+    public CompletableFuture<TapeStream> open(String messageId) {
+        return getMessageMultiplexer.register(messageId, TapeStream.class, OPERATION, () -> probe(messageId));
+    }
+
+    /**
+     * @return ответ, открытый на начале содержимого, или null, если ФНС еще готовит ответ
+     */
+    private TapeStream probe(String messageId) throws IOException {
+        HttpPost post = new HttpPost(mcoProperties.getApi().getBaseUrl());
+        post.setHeader("SOAPAction", "urn:GetMessageRequest");
+        post.setHeader("FNS-OpenApi-Token", mcoProperties.getApi().getToken());
+        post.setHeader("FNS-OpenApi-UserToken", mcoProperties.getApi().getUserToken());
+        post.setEntity(new ByteArrayEntity(GetMessageRequestTemplate.envelopeFor(messageId), SOAP_CONTENT_TYPE));
+
+        ClassicHttpResponse response = httpClient.executeOpen(null, post, null);
+        boolean opened = false;
+        TapeStream stream = null;
+        try {
+            // SOAP Fault приходит с кодом 500 - тело разбирается в любом случае
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                throw new RuntimeException("Пустой ответ GetMessage, HTTP " + response.getCode());
+            }
+            stream = new TapeStream(response, entity.getContent());
+            opened = stream.readHead();
+            return opened ? stream : null;
+        } finally {
+            // Открытый на содержимом ответ дочитает и закроет получатель
+            if (!opened) {
+                if (stream != null) {
+                    stream.close();
+                } else {
+                    response.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Ответ GetMessage с порцией ленты, открытый на начале GetReceiptsTapeResponse.
+     * Не потокобезопасен: дочитывается одним потоком.
+     */
+    public final class TapeStream implements AutoCloseable {
+
+        private final ClassicHttpResponse response;
+        private final InputStream body;
+        private final XMLStreamReader reader;
+        private String status;
+        private GetReceiptsTapeResponse header;
+        private boolean closed;
+
+        private TapeStream(ClassicHttpResponse response, InputStream body) {
+            this.response = response;
+            this.body = body;
+            try {
+                this.reader = xmlInputFactory.createXMLStreamReader(body);
+            } catch (XMLStreamException e) {
+                throw parseError(e);
+            }
+        }
+
+        /**
+         * Прочитать ответ до содержимого.
+         *
+         * @return true - ответ с порцией, false - ФНС еще готовит ответ
+         */
+        private boolean readHead() {
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if ("GetReceiptsTapeResponse".equals(reader.getLocalName())) {
+                        // ProcessingStatus в конверте идет раньше содержимого: без COMPLETED
+                        // ни одна пачка не должна уйти получателю
+                        requireCompleted();
+                        header = new GetReceiptsTapeResponse();
+                        return true;
+                    }
+                    readStatusElement();
+                }
+            } catch (XMLStreamException e) {
+                throw parseError(e);
+            }
+
+            log.debug("Статус обработки: {}", status);
+            if ("COMPLETED".equals(status)) {
+                throw new RuntimeException("Ответ пуст");
+            } else if ("FAILED".equals(status)) {
+                log.error("Запрос завершился с ошибкой");
+                throw new RuntimeException("Обработка завершилась ошибкой на сервере");
+            } else if ("PROCESSING".equals(status)) {
+                log.debug("Обработка еще не завершена, ожидаем...");
+            } else {
+                log.warn("Неизвестный статус: {}", status);
+            }
+            return false;
+        }
+
+        /**
+         * Дочитать порцию, передавая чеки в sink пачками в вызывающем потоке.
+         *
+         * @param chunkSize сколько чеков в пачке
+         * @param sink      обработчик пачки чеков
+         * @return заголовок порции (NextMarker, TotalExpectedRemainingPolls) без списка чеков
+         */
+        public GetReceiptsTapeResponse read(int chunkSize, Consumer<List<GetReceiptsTapeResponse.Receipt>> sink) {
+            int size = Math.max(1, chunkSize);
+            List<GetReceiptsTapeResponse.Receipt> chunk = new ArrayList<>(size);
+            int receipts = 0;
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    switch (reader.getLocalName()) {
+                        case "NextMarker" -> header.setNextMarker(reader.getElementText());
+                        case "TotalExpectedRemainingPolls" ->
+                                header.setTotalExpectedRemainingPolls(Long.valueOf(reader.getElementText().trim()));
+                        case "Receipts" -> {
+                            if (TAPE_NAMESPACE.equals(reader.getNamespaceURI())) {
+                                chunk.add(readReceipt(reader));
+                                receipts++;
+                                if (chunk.size() >= size) {
+                                    sink.accept(chunk);
+                                    chunk = new ArrayList<>(size);
+                                }
+                            }
+                        }
+                        default -> {
+                            readStatusElement();
+                            // Повторный статус после содержимого должен остаться COMPLETED,
+                            // иначе уже отданные пачки откатывает получатель
+                            requireCompleted();
+                        }
+                    }
+                }
+            } catch (XMLStreamException e) {
+                throw parseError(e);
+            }
+
+            if (!chunk.isEmpty()) {
+                sink.accept(chunk);
+            }
+            log.info("Порция ленты прочитана потоково: {} чеков", receipts);
+            return header;
+        }
+
+        private void requireCompleted() {
+            if (!"COMPLETED".equals(status)) {
+                log.error("Содержимое ленты пришло при статусе обработки {}", status);
+                throw new RuntimeException("Получены чеки при статусе обработки " + status);
+            }
+        }
+
+        /** Элементы ответа вне содержимого: статус и ошибки ФНС */
+        private void readStatusElement() throws XMLStreamException {
+            switch (reader.getLocalName()) {
+                case "Fault" -> throw readFault(reader);
+                case "DrPlatformError" -> {
+                    DrPlatformError error = readDrPlatformError(reader);
+                    log.error("Получена ошибка от ФНС: code = {}, message = {}", error.getCode(), error.getMessage());
+                    GlobalExceptionHandler.processDrPlatformError(error);
+                    throw new AssertionError("handleDrPlatformError должен был выбросить исключение");
+                }
+                case "ProcessingStatus" -> status = reader.getElementText();
+                default -> {
+                }
+            }
+        }
+
+        private RuntimeException parseError(XMLStreamException e) {
+            return new RuntimeException("Ошибка разбора ответа GetMessage, HTTP " + response.getCode(), e);
+        }
+
+        /**
+         * Закрыть ответ. Дочитанный до конца ответ возвращает соединение в пул,
+         * недочитанный - разрывает его.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                log.debug("Ошибка закрытия разбора ответа GetMessage: {}", e.getMessage());
+            }
+            try {
+                body.close();
+                response.close();
+            } catch (IOException e) {
+                log.debug("Ошибка закрытия ответа GetMessage: {}", e.getMessage());
+            }
+        }
+    }
+
+    private GetReceiptsTapeResponse.Receipt readReceipt(XMLStreamReader reader) throws XMLStreamException {
+        GetReceiptsTapeResponse.Receipt receipt = new GetReceiptsTapeResponse.Receipt();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "UserIdentifier" -> receipt.setUserIdentifier(reader.getElementText());
+                case "Phone" -> receipt.setPhone(reader.getElementText());
+                case "Email" -> receipt.setEmail(reader.getElementText());
+                case "Json" -> receipt.setJson(readBase64(reader));
+                case "ReceiveDate" -> receipt.setReceiveDate(reader.getElementText());
+                case "SourceCode" -> receipt.setSourceCode(reader.getElementText());
+                default -> skipElement(reader);
+            }
+        }
+        return receipt;
+    }
+
+    /**
+     * Декодирование base64 по кускам текста, без сборки строки всего элемента
+     */
+    private static byte[] readBase64(XMLStreamReader reader) throws XMLStreamException {
+        Base64Decoder decoder = new Base64Decoder();
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                char[] text = reader.getTextCharacters();
+                int end = reader.getTextStart() + reader.getTextLength();
+                for (int i = reader.getTextStart(); i < end; i++) {
+                    decoder.accept(text[i]);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return decoder.finish();
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Вложенный элемент в Json чека", reader.getLocation());
+            }
+        }
+    }
+
+    private static RuntimeException readFault(XMLStreamReader reader) throws XMLStreamException {
+        String faultString = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("DrPlatformError".equals(name)) {
+                    DrPlatformError error = readDrPlatformError(reader);
+                    log.error("Получена ошибка от ФНС в SOAP Fault: code = {}, message = {}",
+                            error.getCode(), error.getMessage());
+                    GlobalExceptionHandler.processDrPlatformError(error);
+                } else if ("faultstring".equals(name) || "Text".equals(name)) {
+                    faultString = reader.getElementText();
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        log.error("SOAP Fault в ответе GetMessage: {}", faultString);
+        return new RuntimeException("SOAP Fault от ФНС: " + faultString);
+    }
+
+    private static DrPlatformError readDrPlatformError(XMLStreamReader reader) throws XMLStreamException {
+        DrPlatformError error = new DrPlatformError();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "Code" -> error.setCode(reader.getElementText());
+                case "Message" -> error.setMessage(reader.getElementText());
+                default -> skipElement(reader);
+            }
+        }
+        return error;
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Инкрементальный декодер base64: каждые 4 символа сразу превращаются в 3 байта
+     */
+    private static final class Base64Decoder {
+        private static final int[] ALPHABET = new int[128];
+
+        static {
+            Arrays.fill(ALPHABET, -1);
+            String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+            for (int i = 0; i < chars.length(); i++) {
+                ALPHABET[chars.charAt(i)] = i;
+            }
+        }
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        private int bits;
+        private int count;
+        private boolean padding;
+
+        void accept(char c) {
+            if (Character.isWhitespace(c)) {
+                return;
+            }
+            if (c == '=') {
+                padding = true;
+                return;
+            }
+            int value = c < ALPHABET.length ? ALPHABET[c] : -1;
+            if (value < 0 || padding) {
+                throw new IllegalArgumentException("Недопустимый символ base64 в Json чека: " + c);
+            }
+            bits = (bits << 6) | value;
+            if (++count == 4) {
+                out.write(bits >> 16);
+                out.write(bits >> 8);
+                out.write(bits);
+                bits = 0;
+                count = 0;
+            }
+        }
+
+        byte[] finish() {
+            switch (count) {
+                case 0 -> {
+                }
+                case 2 -> out.write(bits >> 4);
+                case 3 -> {
+                    out.write(bits >> 10);
+                    out.write(bits >> 2);
+                }
+                default -> throw new IllegalArgumentException("Обрезанный base64 в Json чека");
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -3,12 +3,19 @@ package org.example.mcoService.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Data
 @ConfigurationProperties(prefix = "mco")
 public class McoProperties {
 
     private Api api;
     private Partner partner;
+    private Tape tape = new Tape();
+    private Partitioning partitioning = new Partitioning();
+    private Polling polling = new Polling();
 
     @Data
     public static class Api {
@@ -24,4 +31,105 @@ public class McoProperties {
         private String name;
         private String type;
     }
-}
\ No newline at end of file
+
+    @Data
+    public static class Tape {
+        /**
+         * Сколько элементов загруженной ленты может ждать записи: пачек чеков (stream-chunk-size)
+         * и отметок конца порции. Без потокового чтения порция занимает два элемента.
+         */
+        private int prefetchChunks = 10;
+        /** Читать ответы GetMessage с лентой потоково, не собирая порцию в памяти целиком */
+        private boolean streamResponses = true;
+        /** Размер пачки чеков при потоковом чтении ленты */
+        private int streamChunkSize = 200;
+        /** Минимальная пауза между проходами (лента не дочитана) */
+        private Duration minDelay = Duration.ofSeconds(10);
+        /** Пауза, с которой начинается отсчет при ошибках и на старте */
+        private Duration baseDelay = Duration.ofMinutes(5);
+        /** Максимальная пауза (пустая лента или серия ошибок) */
+        private Duration maxDelay = Duration.ofMinutes(30);
+        /** Сколько новых чеков желательно забирать за проход при обычном потоке */
+        private int targetReceiptsPerRun = 500;
+        /** Сколько хранить в буфере чеки без подключенного владельца */
+        private Duration bufferRetention = Duration.ofDays(30);
+        /** Число потоков разбора чеков порции (0 - по числу ядер) */
+        private int parseParallelism = 0;
+        /** Ожидаемое число чеков для фильтра дедупликации */
+        private long dedupFilterExpectedKeys = 5_000_000;
+        /** Целевая доля ложных срабатываний фильтра дедупликации */
+        private double dedupFilterFpp = 0.01;
+        /** Сколько раз переобрабатывать чек из receipt_dead_letters */
+        private int deadLetterMaxAttempts = 10;
+        /** Размер порции переобработки receipt_dead_letters */
+        private int deadLetterBatchSize = 100;
+    }
+
+    @Data
+    public static class Partitioning {
+        /** Секционировать receipts по месяцам receipt_date_time (таблица переводится при старте) */
+        private boolean enabled = false;
+        /** На сколько месяцев вперед держать готовые секции */
+        private int futureMonths = 3;
+        /** Сколько месяцев хранить чеки; старые секции удаляются целиком (0 - не удалять) */
+        private int retentionMonths = 0;
+    }
+
+    @Data
+    public static class Polling {
+        /** Число потоков, опрашивающих GetMessage по всем ожидающим MessageId */
+        private int workers = 4;
+        /** Не более стольких вызовов GetMessage в секунду на весь сервис */
+        private double maxRequestsPerSecond = 20;
+        /** По скольким последним завершениям операции считается медиана времени обработки */
+        private int historySize = 50;
+        /** Сколько завершений нужно, чтобы первый опрос планировался по медиане */
+        private int minHistorySamples = 5;
+        /** Профиль операций, для которых нет своего в {@link #operations} */
+        private PollingProfile defaults = new PollingProfile();
+        /** Профили по операции ФНС (post-bind-partner, get-receipts-tape, ...) */
+        private Map<String, PollingProfile> operations = new LinkedHashMap<>(Map.of(
+                "post-bind-partner", PollingProfile.quick(),
+                "post-notification", PollingProfile.quick(),
+                "get-receipts-tape", PollingProfile.slow()
+        ));
+
+        public PollingProfile profileFor(String operation) {
+            return operations.getOrDefault(operation, defaults);
+        }
+    }
+
+    @Data
+    public static class PollingProfile {
+        /** Пауза до первого опроса, пока медиана операции еще не известна */
+        private Duration initialDelay = Duration.ofSeconds(1);
+        /** Первая пауза между повторными опросами */
+        private Duration minInterval = Duration.ofSeconds(1);
+        /** Предел роста паузы между опросами */
+        private Duration maxInterval = Duration.ofSeconds(5);
+        /** Во сколько раз растет пауза после каждого PROCESSING */
+        private double multiplier = 1.5;
+        /** Случайное отклонение паузы в долях (0.2 - ±20%), чтобы опросы не шли пачками */
+        private double jitter = 0.2;
+        /** Сколько ждать результата до таймаута */
+        private Duration timeout = Duration.ofSeconds(60);
+
+        /** Быстрые операции: заявка на подключение, уведомление */
+        static PollingProfile quick() {
+            PollingProfile profile = new PollingProfile();
+            profile.setInitialDelay(Duration.ofMillis(300));
+            profile.setMinInterval(Duration.ofMillis(500));
+            profile.setMaxInterval(Duration.ofSeconds(3));
+            return profile;
+        }
+
+        /** Порция ленты чеков собирается дольше остальных операций */
+        static PollingProfile slow() {
+            PollingProfile profile = new PollingProfile();
+            profile.setInitialDelay(Duration.ofSeconds(2));
+            profile.setMinInterval(Duration.ofSeconds(2));
+            profile.setMaxInterval(Duration.ofSeconds(8));
+            return profile;
+        }
+    }
+}
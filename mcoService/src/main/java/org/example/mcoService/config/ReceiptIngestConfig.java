@@ -0,0 +1,20 @@
+package org.example.mcoService.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class ReceiptIngestConfig {
+
+    /**
+     * Пул для разбора JSON и построения сущностей чеков порции.
+     * Отдельный от common pool, чтобы разбор больших порций не мешал остальному приложению.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool receiptParsingPool(McoProperties properties) {
+        int parallelism = properties.getTape().getParseParallelism();
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -3,6 +3,9 @@ package org.example.mcoService.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.mcoService.dto.api.*;
+import org.example.mcoService.dto.receipt.ReceiptCursor;
+import org.example.mcoService.dto.receipt.ReceiptField;
+import org.example.mcoService.enums.SpendPeriod;
 import org.example.mcoService.dto.response.*;
 import org.example.mcoService.exception.BusinessMcoException;
 import org.example.mcoService.exception.FatalMcoException;
@@ -11,19 +14,30 @@ import org.example.mcoService.exception.RetryableMcoException;
 import org.example.mcoService.service.BindApprovalPollingService;
 import org.example.mcoService.service.McoService;
 import org.example.mcoService.service.ReceiptService;
+import org.example.mcoService.service.ReceiptSpendService;
+import org.example.mcoService.service.ReceiptStreamingService;
 import org.example.mcoService.service.UnboundUsersSyncScheduler;
 import org.example.mcoService.websocket.BindStatusWebSocketHandler;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -35,16 +49,28 @@ public class McoController {
 
     private final McoService mcoService;
     private final ReceiptService receiptService;
+    private final ReceiptStreamingService receiptStreamingService;
+    private final ReceiptSpendService receiptSpendService;
     private final BindApprovalPollingService pollingService;
     private final BindStatusWebSocketHandler webSocketHandler;
     private final UnboundUsersSyncScheduler unboundUsersSyncScheduler;
 
+    private static final int MAX_RECEIPTS_PAGE_SIZE = 100;
+    private static final int MAX_STREAMED_PAGE_SIZE = 1000;
+    private static final int MAX_SPEND_PERIODS = 12;
+
     @GetMapping("/receipts/user")
-    public ResponseEntity<ApiResponse<Page<ReceiptDto>>> getUserReceipts(
+    public ResponseEntity<?> getUserReceipts(
             @RequestParam String phone,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @RequestParam(required = false) String sort) {
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String fields) {
+
+        if (fields != null) {
+            return streamUserReceipts(phone, fields, size, (userId, selected, out) ->
+                    receiptStreamingService.writePage(userId, selected, page, size, out));
+        }
 
         try {
             Pageable pageable = PageRequest.of(page, size, Sort.by("receiptDateTime").descending());
@@ -67,6 +93,197 @@ public class McoController {
         }
     }
 
+    /**
+     * Чеки пользователя с keyset-пагинацией: курсор вместо номера страницы, без подсчета общего количества.
+     * Общее количество отдается отдельным запросом /receipts/user/count.
+     */
+    @GetMapping("/receipts/user/cursor")
+    public ResponseEntity<?> getUserReceiptsByCursor(
+            @RequestParam String phone,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String fields) {
+
+        if (fields != null) {
+            ReceiptCursor position;
+            try {
+                position = cursor == null || cursor.isBlank() ? null : ReceiptCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+            }
+            return streamUserReceipts(phone, fields, size, (userId, selected, out) ->
+                    receiptStreamingService.writeCursorPage(userId, selected, position, size, out));
+        }
+
+        if (size < 1 || size > MAX_RECEIPTS_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(
+                    ApiResponse.error("Размер страницы должен быть от 1 до " + MAX_RECEIPTS_PAGE_SIZE)
+            );
+        }
+
+        try {
+            ReceiptCursorPageDto data = receiptService.getUserReceiptsByCursor(phone, cursor, size);
+            return ResponseEntity.ok(ApiResponse.success(
+                    String.format("Найдено чеков на странице: %d", data.getReceipts().size()),
+                    data
+            ));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Ошибка получения чеков пользователя {}", phone, e);
+            return ResponseEntity.status(500).body(
+                    ApiResponse.error("Ошибка: " + e.getMessage())
+            );
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReceiptStreamWriter {
+        void write(UUID userId, Set<ReceiptField> fields, OutputStream out) throws IOException;
+    }
+
+    /**
+     * Потоковая выдача чеков с выборочными полями. Параметры и пользователь проверяются
+     * до начала записи: после первого байта статус ответа уже не изменить.
+     */
+    private ResponseEntity<?> streamUserReceipts(String phone, String fields, int size, ReceiptStreamWriter writer) {
+        if (size < 1 || size > MAX_STREAMED_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(
+                    ApiResponse.error("Размер страницы должен быть от 1 до " + MAX_STREAMED_PAGE_SIZE)
+            );
+        }
+
+        Set<ReceiptField> selected;
+        UUID userId;
+        try {
+            selected = ReceiptField.parse(fields);
+            userId = receiptService.getUserIdByPhone(phone);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Ошибка получения чеков пользователя {}", phone, e);
+            return ResponseEntity.status(500).body(ApiResponse.error("Ошибка: " + e.getMessage()));
+        }
+
+        StreamingResponseBody body = out -> writer.write(userId, selected, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @GetMapping("/receipts/user/count")
+    public ResponseEntity<ApiResponse<Long>> countUserReceipts(@RequestParam String phone) {
+        try {
+            long count = receiptService.countUserReceiptsByPhone(phone);
+            return ResponseEntity.ok(ApiResponse.success("Количество чеков пользователя", count));
+
+        } catch (Exception e) {
+            log.error("Ошибка подсчета чеков пользователя {}", phone, e);
+            return ResponseEntity.status(500).body(
+                    ApiResponse.error("Ошибка: " + e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * Траты пользователя по неделям или месяцам из дневного среза (без сканирования чеков).
+     * По умолчанию - последние 12 периодов, включая текущий.
+     *
+     * @param period week или month
+     * @param from   первый день диапазона
+     * @param to     последний день диапазона
+     */
+    @GetMapping("/receipts/user/spend")
+    public ResponseEntity<ApiResponse<List<SpendPeriodDto>>> getUserSpend(
+            @RequestParam String phone,
+            @RequestParam(defaultValue = "month") String period,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        try {
+            SpendPeriod spendPeriod = SpendPeriod.parse(period);
+            LocalDate rangeTo = to != null ? to : LocalDate.now();
+            LocalDate rangeFrom = from != null ? from : switch (spendPeriod) {
+                case WEEK -> rangeTo.minusWeeks(MAX_SPEND_PERIODS - 1).with(DayOfWeek.MONDAY);
+                case MONTH -> rangeTo.minusMonths(MAX_SPEND_PERIODS - 1).withDayOfMonth(1);
+            };
+            if (rangeFrom.isAfter(rangeTo)) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("Начало диапазона позже конца"));
+            }
+
+            List<SpendPeriodDto> data = receiptSpendService.getUserSpend(phone, spendPeriod, rangeFrom, rangeTo);
+            return ResponseEntity.ok(ApiResponse.success(
+                    String.format("Найдено периодов: %d", data.size()),
+                    data
+            ));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Ошибка получения трат пользователя {}", phone, e);
+            return ResponseEntity.status(500).body(
+                    ApiResponse.error("Ошибка: " + e.getMessage())
+            );
+        }
+    }
+
+    /**
+     * Внутренний вызов userService: страница чеков пользователя без обертки ApiResponse
+     */
+    @GetMapping("/receipts/user/{userId}")
+    public ResponseEntity<List<ReceiptDto>> getUserReceiptsById(
+            @PathVariable UUID userId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+
+        // Урезанная страница разошлась бы с пагинацией, которую userService считает от запрошенного size
+        if (page < 0 || size < 1 || size > MAX_RECEIPTS_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(receiptService.getUserReceiptsPage(userId, page, size));
+    }
+
+    /**
+     * Внутренний вызов userService: количество чеков из сводки пользователя
+     */
+    @GetMapping("/receipts/user/{userId}/count")
+    public ResponseEntity<Long> countUserReceiptsById(@PathVariable UUID userId) {
+        return ResponseEntity.ok(receiptService.countUserReceipts(userId));
+    }
+
+    /**
+     * Внутренний вызов userService: сводка по чекам пользователя (количество, сумма, период)
+     */
+    @GetMapping("/receipts/user/{userId}/summary")
+    public ResponseEntity<UserReceiptsSummaryDto> getUserReceiptsSummary(@PathVariable UUID userId) {
+        return ResponseEntity.ok(receiptService.getUserReceiptsSummary(userId));
+    }
+
+    /**
+     * Детальная информация о чеке пользователя, включая полный JSON (в списках он не отдается)
+     */
+    @GetMapping("/receipts/{receiptId}")
+    public ResponseEntity<ApiResponse<ReceiptDto>> getUserReceipt(
+            @PathVariable UUID receiptId,
+            @RequestParam String phone) {
+
+        try {
+            return ResponseEntity.ok(ApiResponse.success(receiptService.getUserReceipt(phone, receiptId)));
+
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("Ошибка получения чека {} пользователя {}", receiptId, phone, e);
+            return ResponseEntity.status(500).body(
+                    ApiResponse.error("Ошибка: " + e.getMessage())
+            );
+        }
+    }
+
     @PostMapping("/bind-users-batch")
     public ResponseEntity<ApiResponse<Object>> bindUsersBatch(
             @RequestBody List<String> phoneNumbers) {
@@ -0,0 +1,33 @@
+package org.example.mcoService.dto.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница чеков при keyset-пагинации (без общего количества)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptCursorPageDto {
+
+    /**
+     * Чеки страницы
+     */
+    private List<ReceiptDto> receipts;
+
+    /**
+     * Курсор следующей страницы (null, если это последняя)
+     */
+    private String nextCursor;
+
+    /**
+     * Есть ли следующая страница
+     */
+    private boolean hasMore;
+}
@@ -1,5 +1,6 @@
 package org.example.mcoService.dto.api;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonRawValue;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -8,6 +9,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Data
 @Builder
@@ -15,6 +17,8 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class ReceiptDto {
 
+    private UUID id;
+
     private String phone;
     private String email;
 
@@ -32,6 +36,10 @@ public class ReceiptDto {
     private String userInn;
     private String retailPlace;
 
+    /**
+     * Полный JSON чека - только в детальном ответе, в списках не заполняется
+     */
     @JsonRawValue
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String rawJson;
 }
\ No newline at end of file
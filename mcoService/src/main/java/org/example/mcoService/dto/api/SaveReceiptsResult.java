@@ -16,6 +16,10 @@ public record SaveReceiptsResult(int count, BigDecimal totalSum) {
         return new SaveReceiptsResult(0, BigDecimal.ZERO);
     }
 
+    public SaveReceiptsResult plus(SaveReceiptsResult other) {
+        return new SaveReceiptsResult(count + other.count, totalSum.add(other.totalSum));
+    }
+
     public boolean hasNewReceipts() {
         return count > 0;
     }
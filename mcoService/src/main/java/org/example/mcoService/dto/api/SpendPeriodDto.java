@@ -0,0 +1,28 @@
+package org.example.mcoService.dto.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Траты пользователя за период (неделю или месяц)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SpendPeriodDto {
+
+    /**
+     * Первый день периода
+     */
+    private LocalDate periodStart;
+
+    private long receiptCount;
+    private BigDecimal totalAmount;
+    private BigDecimal averageAmount;
+}
@@ -0,0 +1,25 @@
+package org.example.mcoService.dto.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Сводка по чекам пользователя (для userService)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserReceiptsSummaryDto {
+
+    private long totalCount;
+    private BigDecimal totalAmount;
+    private BigDecimal averageAmount;
+    private LocalDateTime oldestReceiptDate;
+    private LocalDateTime newestReceiptDate;
+}
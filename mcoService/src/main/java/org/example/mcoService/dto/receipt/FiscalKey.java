@@ -0,0 +1,12 @@
+package org.example.mcoService.dto.receipt;
+
+/**
+ * Фискальный ключ чека (ФП, ФД, ФН) — уникально идентифицирует чек.
+ * Используется для дедупликации чеков из ленты МЧО.
+ *
+ * @param fiscalSign           фискальный признак документа
+ * @param fiscalDocumentNumber номер фискального документа
+ * @param fiscalDriveNumber    номер фискального накопителя
+ */
+public record FiscalKey(Long fiscalSign, Long fiscalDocumentNumber, String fiscalDriveNumber) {
+}
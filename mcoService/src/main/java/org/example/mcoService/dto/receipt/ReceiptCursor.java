@@ -0,0 +1,40 @@
+package org.example.mcoService.dto.receipt;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Позиция в списке чеков пользователя для keyset-пагинации.
+ * Список упорядочен по (receiptDateTime DESC, id ASC); клиенту курсор отдается
+ * непрозрачной base64url-строкой.
+ *
+ * @param receiptDateTime дата чека последнего элемента страницы
+ * @param id              id последнего элемента страницы
+ */
+public record ReceiptCursor(LocalDateTime receiptDateTime, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = receiptDateTime + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    public static ReceiptCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new ReceiptCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    UUID.fromString(raw.substring(separator + 1))
+            );
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor, e);
+        }
+    }
+}
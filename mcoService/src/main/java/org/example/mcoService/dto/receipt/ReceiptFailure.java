@@ -0,0 +1,19 @@
+package org.example.mcoService.dto.receipt;
+
+import org.example.mcoService.dto.response.GetReceiptsTapeResponse;
+
+/**
+ * Чек ленты, который не удалось обработать.
+ *
+ * @param receipt чек как пришел из ленты
+ * @param stage   этап обработки, на котором произошла ошибка
+ * @param error   ошибка
+ */
+public record ReceiptFailure(GetReceiptsTapeResponse.Receipt receipt, Stage stage, Exception error) {
+
+    public enum Stage {
+        PARSE,
+        BUILD,
+        USER
+    }
+}
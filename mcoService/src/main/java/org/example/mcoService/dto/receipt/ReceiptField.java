@@ -0,0 +1,63 @@
+package org.example.mcoService.dto.receipt;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Поля чека, доступные для выборки через параметр {@code fields=}.
+ * Имя поля совпадает со свойством сущности Receipt и с именем в JSON ответа.
+ */
+public enum ReceiptField {
+    ID("id"),
+    PHONE("phone"),
+    EMAIL("email"),
+    FISCAL_SIGN("fiscalSign"),
+    FISCAL_DOCUMENT_NUMBER("fiscalDocumentNumber"),
+    FISCAL_DRIVE_NUMBER("fiscalDriveNumber"),
+    RECEIPT_DATE_TIME("receiptDateTime"),
+    RECEIVE_DATE("receiveDate"),
+    TOTAL_SUM("totalSum"),
+    SOURCE_CODE("sourceCode"),
+    OPERATION_TYPE("operationType"),
+    USER_INN("userInn"),
+    RETAIL_PLACE("retailPlace");
+
+    private final String property;
+
+    ReceiptField(String property) {
+        this.property = property;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    /**
+     * Разобрать список полей через запятую.
+     *
+     * @throws IllegalArgumentException если поле неизвестно или список пуст
+     */
+    public static Set<ReceiptField> parse(String fields) {
+        EnumSet<ReceiptField> result = EnumSet.noneOf(ReceiptField.class);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            result.add(fromProperty(trimmed));
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("Список полей пуст");
+        }
+        return result;
+    }
+
+    private static ReceiptField fromProperty(String property) {
+        for (ReceiptField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестное поле чека: " + property);
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.mcoService.dto.receipt;
+
+/**
+ * Скалярные поля чека, извлеченные из JSON без построения дерева.
+ *
+ * @param fiscalSign           фискальный признак документа
+ * @param fiscalDocumentNumber номер фискального документа
+ * @param fiscalDriveNumber    номер фискального накопителя
+ * @param dateTime             дата и время чека (unix time, секунды)
+ * @param totalSum             итоговая сумма в копейках
+ * @param operationType        признак расчета (может отсутствовать)
+ * @param userInn              ИНН продавца (может отсутствовать)
+ * @param retailPlace          место расчетов (может отсутствовать)
+ */
+public record ReceiptFields(Long fiscalSign,
+                            Long fiscalDocumentNumber,
+                            String fiscalDriveNumber,
+                            long dateTime,
+                            long totalSum,
+                            Integer operationType,
+                            String userInn,
+                            String retailPlace) {
+
+    public FiscalKey fiscalKey() {
+        return new FiscalKey(fiscalSign, fiscalDocumentNumber, fiscalDriveNumber);
+    }
+}
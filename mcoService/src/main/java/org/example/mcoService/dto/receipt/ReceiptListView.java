@@ -0,0 +1,38 @@
+package org.example.mcoService.dto.receipt;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Проекция чека для списков: только скалярные колонки, без raw_json.
+ * Алиасы в запросах должны совпадать с именами свойств.
+ */
+public interface ReceiptListView {
+
+    UUID getId();
+
+    String getPhone();
+
+    String getEmail();
+
+    Long getFiscalSign();
+
+    Long getFiscalDocumentNumber();
+
+    String getFiscalDriveNumber();
+
+    LocalDateTime getReceiptDateTime();
+
+    LocalDateTime getReceiveDate();
+
+    BigDecimal getTotalSum();
+
+    String getSourceCode();
+
+    Integer getOperationType();
+
+    String getUserInn();
+
+    String getRetailPlace();
+}
@@ -1,11 +1,13 @@
 package org.example.mcoService.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonRawValue;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.example.common.id.GeneratedUuidV7;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -14,7 +16,12 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "receipts")
+@Table(name = "receipts", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_receipts_fiscal_key",
+                columnNames = {"fiscal_sign", "fiscal_document_number", "fiscal_drive_number"})
+}, indexes = {
+        @Index(name = "idx_receipts_user_date_id", columnList = "user_id, receipt_date_time DESC, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -22,7 +29,7 @@ import java.util.UUID;
 public class Receipt {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     private UUID id;
 
     @Column(name = "user_id", nullable = false)
@@ -72,6 +79,14 @@ public class Receipt {
     @JsonRawValue
     private String rawJson;
 
+    /**
+     * Исходные байты JSON из ленты МЧО для пакетной вставки в raw_json
+     * без промежуточной строки. В сущности не хранится.
+     */
+    @Transient
+    @JsonIgnore
+    private byte[] rawJsonBytes;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -0,0 +1,65 @@
+package org.example.mcoService.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Дневной срез трат пользователя по источнику и ИНН продавца.
+ * Ведется инкрементально при вставке и удалении чеков
+ * (см. {@link org.example.mcoService.repository.ReceiptRollupJdbcRepository}),
+ * поэтому месячная и недельная статистика не сканирует receipts.
+ * Отсутствующий ИНН хранится пустой строкой, чтобы входить в первичный ключ.
+ */
+@Entity
+@Table(name = "receipt_daily_rollup")
+@IdClass(ReceiptDailyRollup.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptDailyRollup {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Id
+    @Column(name = "day")
+    private LocalDate day;
+
+    @Id
+    @Column(name = "source_code", length = 50)
+    private String sourceCode;
+
+    @Id
+    @Column(name = "user_inn", length = 12)
+    private String userInn;
+
+    @Column(name = "receipt_count", nullable = false)
+    private long receiptCount;
+
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID userId;
+        private LocalDate day;
+        private String sourceCode;
+        private String userInn;
+    }
+}
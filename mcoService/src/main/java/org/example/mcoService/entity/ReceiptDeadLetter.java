@@ -0,0 +1,84 @@
+package org.example.mcoService.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.common.id.GeneratedUuidV7;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Чек ленты, который не удалось разобрать или сохранить.
+ * Хранит исходные байты, чтобы после исправления кода или настроек
+ * переобработать чек без повторного чтения ленты.
+ * Записи вставляются через {@link org.example.mcoService.repository.ReceiptJdbcRepository#insertDeadLetters}.
+ */
+@Entity
+@Table(name = "receipt_dead_letters", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_receipt_dead_letters_payload", columnNames = "payload_hash")
+}, indexes = {
+        @Index(name = "idx_receipt_dead_letters_attempt", columnList = "attempts, last_attempt_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptDeadLetter {
+
+    @Id
+    @GeneratedUuidV7
+    private UUID id;
+
+    /** SHA-256 содержимого чека: один и тот же чек ленты записывается один раз */
+    @Column(name = "payload_hash", nullable = false, length = 64, updatable = false)
+    private String payloadHash;
+
+    @Column(name = "user_identifier", length = 20)
+    private String userIdentifier;
+
+    @Column(name = "phone", length = 20)
+    private String phone;
+
+    @Column(name = "email")
+    private String email;
+
+    @Column(name = "receive_date", length = 40)
+    private String receiveDate;
+
+    @Column(name = "source_code", length = 50)
+    private String sourceCode;
+
+    @Column(name = "raw_json", columnDefinition = "bytea")
+    private byte[] rawJson;
+
+    @Column(name = "stage", nullable = false, length = 20)
+    private String stage;
+
+    @Column(name = "error_class", nullable = false)
+    private String errorClass;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_attempt_at", nullable = false)
+    private LocalDateTime lastAttemptAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (lastAttemptAt == null) {
+            lastAttemptAt = createdAt;
+        }
+    }
+}
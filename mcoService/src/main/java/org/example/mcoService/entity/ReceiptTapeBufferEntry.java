@@ -0,0 +1,54 @@
+package org.example.mcoService.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.common.id.GeneratedUuidV7;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Чек из ленты, который на момент чтения не принадлежал ни одному подключенному пользователю.
+ * Хранится как пришел из ФНС, чтобы при подключении пользователя забрать его
+ * из локального буфера, а не перечитывать ленту с S_FROM_BEGINNING.
+ */
+@Entity
+@Table(name = "receipt_tape_buffer", indexes = {
+        @Index(name = "idx_receipt_tape_buffer_identifier", columnList = "user_identifier"),
+        @Index(name = "idx_receipt_tape_buffer_phone", columnList = "phone"),
+        @Index(name = "idx_receipt_tape_buffer_buffered_at", columnList = "buffered_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptTapeBufferEntry {
+
+    @Id
+    @GeneratedUuidV7
+    private UUID id;
+
+    @Column(name = "user_identifier", length = 20)
+    private String userIdentifier;
+
+    @Column(name = "phone", length = 20)
+    private String phone;
+
+    @Column(name = "email")
+    private String email;
+
+    @Column(name = "receive_date", nullable = false, length = 40)
+    private String receiveDate;
+
+    @Column(name = "source_code", length = 50)
+    private String sourceCode;
+
+    @Column(name = "raw_json", nullable = false, columnDefinition = "bytea")
+    private byte[] rawJson;
+
+    @Column(name = "buffered_at", nullable = false)
+    private LocalDateTime bufferedAt;
+}
@@ -0,0 +1,39 @@
+package org.example.mcoService.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сохраненная позиция (маркер) в ленте МЧО.
+ * Пишется в той же транзакции, что и все пачки чеков порции (ReceiptTapeConsumer), поэтому после сбоя
+ * чтение продолжается ровно с первой незаписанной порции.
+ */
+@Entity
+@Table(name = "tape_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TapeCheckpoint {
+
+    @Id
+    @Column(name = "tape_key", length = 100)
+    private String tapeKey;
+
+    @Column(name = "marker", nullable = false, columnDefinition = "TEXT")
+    private String marker;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
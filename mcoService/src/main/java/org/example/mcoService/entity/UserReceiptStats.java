@@ -0,0 +1,44 @@
+package org.example.mcoService.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Сводка по чекам пользователя.
+ * Ведется инкрементально в {@link org.example.mcoService.repository.ReceiptJdbcRepository}
+ * в той же транзакции, что и пакетная вставка или удаление чеков.
+ */
+@Entity
+@Table(name = "user_receipt_stats")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserReceiptStats {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "receipt_count", nullable = false)
+    private long receiptCount;
+
+    @Column(name = "total_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "oldest_receipt_date")
+    private LocalDateTime oldestReceiptDate;
+
+    @Column(name = "newest_receipt_date")
+    private LocalDateTime newestReceiptDate;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
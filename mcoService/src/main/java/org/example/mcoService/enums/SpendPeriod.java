@@ -0,0 +1,35 @@
+package org.example.mcoService.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Период группировки трат пользователя
+ */
+@Getter
+@RequiredArgsConstructor
+public enum SpendPeriod {
+
+    /**
+     * Календарная неделя (с понедельника)
+     */
+    WEEK("week"),
+
+    /**
+     * Календарный месяц
+     */
+    MONTH("month");
+
+    /**
+     * Единица для date_trunc
+     */
+    private final String truncUnit;
+
+    public static SpendPeriod parse(String value) {
+        try {
+            return SpendPeriod.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестный период: " + value + ", допустимы week и month");
+        }
+    }
+}
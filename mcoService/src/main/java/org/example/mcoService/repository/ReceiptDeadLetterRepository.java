@@ -0,0 +1,26 @@
+package org.example.mcoService.repository;
+
+import org.example.mcoService.entity.ReceiptDeadLetter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ReceiptDeadLetterRepository extends JpaRepository<ReceiptDeadLetter, UUID> {
+
+    /**
+     * Порция записей для повторной обработки: не исчерпавшие попытки и не трогавшиеся в текущем проходе
+     */
+    @Query("SELECT d FROM ReceiptDeadLetter d " +
+            "WHERE d.attempts < :maxAttempts AND d.lastAttemptAt < :before " +
+            "ORDER BY d.createdAt")
+    List<ReceiptDeadLetter> findForReprocessing(@Param("maxAttempts") int maxAttempts,
+                                                @Param("before") LocalDateTime before,
+                                                Pageable pageable);
+}
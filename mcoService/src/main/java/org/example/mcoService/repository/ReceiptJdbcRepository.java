@@ -0,0 +1,526 @@
+package org.example.mcoService.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.common.id.UuidV7;
+import org.example.mcoService.dto.receipt.FiscalKey;
+import org.example.mcoService.dto.receipt.ReceiptFailure;
+import org.example.mcoService.dto.response.GetReceiptsTapeResponse;
+import org.example.mcoService.entity.Receipt;
+import org.example.mcoService.entity.UserReceiptStats;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Пакетная запись чеков в обход JPA.
+ * Порция ленты вставляется многострочными INSERT ... ON CONFLICT DO NOTHING
+ * по уникальному фискальному ключу, поэтому дедупликация атомарна
+ * даже при параллельной работе нескольких реплик.
+ * Сводка user_receipt_stats и дневной срез receipt_daily_rollup меняются здесь же,
+ * в транзакции вставки или удаления, поэтому чеки нужно писать и удалять только через этот репозиторий.
+ */
+@Slf4j
+@Repository
+public class ReceiptJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReceiptRollupJdbcRepository rollupRepository;
+    private volatile String insertSuffix = INSERT_SUFFIX;
+
+    public ReceiptJdbcRepository(JdbcTemplate jdbcTemplate,
+                                 ReceiptRollupJdbcRepository rollupRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rollupRepository = rollupRepository;
+    }
+
+    /**
+     * Выбрать ключ ON CONFLICT по фактическому виду таблицы receipts:
+     * уникальный ключ секционированной таблицы обязан включать ключ секционирования.
+     * Вызывается ReceiptPartitionManager после подготовки таблицы, до запуска планировщиков.
+     */
+    public void usePartitionedTable(boolean partitioned) {
+        this.insertSuffix = partitioned ? INSERT_SUFFIX_PARTITIONED : INSERT_SUFFIX;
+    }
+
+    private static final int INSERT_CHUNK_SIZE = 500;
+    private static final int STREAM_FETCH_SIZE = 10_000;
+
+    private static final String INSERT_PREFIX = "INSERT INTO receipts (" +
+            "id, user_id, user_identifier, phone, email, " +
+            "fiscal_sign, fiscal_document_number, fiscal_drive_number, " +
+            "receipt_date_time, receive_date, total_sum, source_code, " +
+            "operation_type, user_inn, retail_place, raw_json, created_at, updated_at) VALUES ";
+
+    private static final String VALUES_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, convert_from(?, 'UTF8')::jsonb, ?, ?)";
+
+    private static final String INSERT_SUFFIX =
+            " ON CONFLICT (fiscal_sign, fiscal_document_number, fiscal_drive_number) DO NOTHING" +
+            " RETURNING fiscal_sign, fiscal_document_number, fiscal_drive_number";
+
+    private static final String INSERT_SUFFIX_PARTITIONED =
+            " ON CONFLICT (fiscal_sign, fiscal_document_number, fiscal_drive_number, receipt_date_time) DO NOTHING" +
+            " RETURNING fiscal_sign, fiscal_document_number, fiscal_drive_number";
+
+    private static final String INSERT_BUFFER_SQL = "INSERT INTO receipt_tape_buffer (" +
+            "id, user_identifier, phone, email, receive_date, source_code, raw_json, buffered_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Лента может выдать тот же ошибочный чек повторно (например, при перечитывании с начала):
+     * запись с тем же содержимым (payload_hash) пропускается
+     */
+    private static final String INSERT_DEAD_LETTER_SQL = "INSERT INTO receipt_dead_letters (" +
+            "id, payload_hash, user_identifier, phone, email, receive_date, source_code, raw_json, " +
+            "stage, error_class, error_message, attempts, created_at, last_attempt_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, ?, ?) " +
+            "ON CONFLICT (payload_hash) DO NOTHING";
+
+    /**
+     * Существующей строке сводки прибавляется только дельта пакета, receipts не читается
+     */
+    private static final String INCREMENT_STATS_SQL = "UPDATE user_receipt_stats SET " +
+            "receipt_count = receipt_count + ?, " +
+            "total_amount = total_amount + ?, " +
+            "oldest_receipt_date = LEAST(oldest_receipt_date, ?), " +
+            "newest_receipt_date = GREATEST(newest_receipt_date, ?), " +
+            "updated_at = ? " +
+            "WHERE user_id = ?";
+
+    /**
+     * Строки еще нет: она один раз считается по receipts пользователя (туда уже попали
+     * вставленные чеки), так как у него могут быть чеки, сохраненные до появления сводки.
+     * Если строку успел создать параллельный пакет, прибавляется только дельта.
+     */
+    private static final String INSERT_STATS_SQL = "INSERT INTO user_receipt_stats (" +
+            "user_id, receipt_count, total_amount, oldest_receipt_date, newest_receipt_date, updated_at) " +
+            "SELECT r.user_id, COUNT(*), SUM(r.total_sum), MIN(r.receipt_date_time), MAX(r.receipt_date_time), ? " +
+            "FROM receipts r WHERE r.user_id = ? GROUP BY r.user_id " +
+            "ON CONFLICT (user_id) DO UPDATE SET " +
+            "receipt_count = user_receipt_stats.receipt_count + ?, " +
+            "total_amount = user_receipt_stats.total_amount + ?, " +
+            "oldest_receipt_date = LEAST(user_receipt_stats.oldest_receipt_date, ?), " +
+            "newest_receipt_date = GREATEST(user_receipt_stats.newest_receipt_date, ?), " +
+            "updated_at = EXCLUDED.updated_at";
+
+    /**
+     * Сводка для пользователей без новых чеков заполняется разово; уже существующие строки не трогаются
+     */
+    private static final String BACKFILL_STATS_SQL = "INSERT INTO user_receipt_stats (" +
+            "user_id, receipt_count, total_amount, oldest_receipt_date, newest_receipt_date, updated_at) " +
+            "SELECT user_id, COUNT(*), SUM(total_sum), MIN(receipt_date_time), MAX(receipt_date_time), now() " +
+            "FROM receipts GROUP BY user_id " +
+            "ON CONFLICT (user_id) DO NOTHING";
+
+    private static final String AGGREGATE_USER_SQL = "SELECT COUNT(*) AS receipt_count, " +
+            "COALESCE(SUM(total_sum), 0) AS total_amount, " +
+            "MIN(receipt_date_time) AS oldest_receipt_date, MAX(receipt_date_time) AS newest_receipt_date " +
+            "FROM receipts WHERE user_id = ?";
+
+    /**
+     * Пакет выбирается по индексу (user_id, receipt_date_time), а строки удаляются по (id, receipt_date_time),
+     * чтобы при секционировании поиск шел только в секцию нужного месяца.
+     * Для userIdentifier индекса нет: id - UUID v7, поэтому порядок по нему совпадает с порядком вставки.
+     */
+    private static final String DELETE_BATCH_BY_USER_ID_SQL = "DELETE FROM receipts WHERE (id, receipt_date_time) IN (" +
+            "SELECT id, receipt_date_time FROM receipts WHERE user_id = ? ORDER BY receipt_date_time LIMIT ?) " +
+            "RETURNING user_id, total_sum, receipt_date_time, source_code, user_inn";
+
+    private static final String DELETE_BATCH_BY_USER_IDENTIFIER_SQL = "DELETE FROM receipts WHERE (id, receipt_date_time) IN (" +
+            "SELECT id, receipt_date_time FROM receipts WHERE user_identifier = ? ORDER BY id LIMIT ?) " +
+            "RETURNING user_id, total_sum, receipt_date_time, source_code, user_inn";
+
+    /**
+     * Границы дат после удаления не вычитаются, а берутся заново по индексу (user_id, receipt_date_time)
+     */
+    private static final String DECREMENT_STATS_SQL = "UPDATE user_receipt_stats SET " +
+            "receipt_count = receipt_count - ?, " +
+            "total_amount = total_amount - ?, " +
+            "oldest_receipt_date = (SELECT MIN(receipt_date_time) FROM receipts WHERE user_id = ?), " +
+            "newest_receipt_date = (SELECT MAX(receipt_date_time) FROM receipts WHERE user_id = ?), " +
+            "updated_at = ? " +
+            "WHERE user_id = ?";
+
+    private static final String DELETE_EMPTY_STATS_SQL =
+            "DELETE FROM user_receipt_stats WHERE user_id = ? AND receipt_count <= 0";
+
+    /**
+     * Вычесть из сводки содержимое секции перед ее удалением ({@code %s} - имя секции)
+     */
+    private static final String SUBTRACT_PARTITION_STATS_SQL = "UPDATE user_receipt_stats s SET " +
+            "receipt_count = s.receipt_count - p.cnt, total_amount = s.total_amount - p.amount, updated_at = now() " +
+            "FROM (SELECT user_id, COUNT(*) AS cnt, SUM(total_sum) AS amount FROM %s GROUP BY user_id) p " +
+            "WHERE s.user_id = p.user_id";
+
+    /**
+     * Пересчитать границы дат у пользователей, чьи самые старые чеки были в удаленной секции
+     */
+    private static final String REFRESH_STATS_BOUNDS_SQL = "UPDATE user_receipt_stats s SET " +
+            "oldest_receipt_date = (SELECT MIN(r.receipt_date_time) FROM receipts r WHERE r.user_id = s.user_id), " +
+            "newest_receipt_date = (SELECT MAX(r.receipt_date_time) FROM receipts r WHERE r.user_id = s.user_id) " +
+            "WHERE s.oldest_receipt_date < ?";
+
+    private static final String DELETE_ALL_EMPTY_STATS_SQL = "DELETE FROM user_receipt_stats WHERE receipt_count <= 0";
+
+    /**
+     * Изменение сводки пользователя в рамках одного пакета
+     */
+    private static final class StatsDelta {
+        long count;
+        BigDecimal amount = BigDecimal.ZERO;
+        LocalDateTime oldest;
+        LocalDateTime newest;
+
+        void add(BigDecimal sum, LocalDateTime receiptDateTime) {
+            count++;
+            if (sum != null) {
+                amount = amount.add(sum);
+            }
+            if (receiptDateTime != null) {
+                if (oldest == null || receiptDateTime.isBefore(oldest)) {
+                    oldest = receiptDateTime;
+                }
+                if (newest == null || receiptDateTime.isAfter(newest)) {
+                    newest = receiptDateTime;
+                }
+            }
+        }
+    }
+
+    /**
+     * Вставить чеки, пропуская уже существующие.
+     *
+     * @param receipts чеки для вставки (id и даты создания проставляются здесь)
+     * @return фискальные ключи фактически вставленных чеков
+     */
+    public List<FiscalKey> insertIgnoringDuplicates(List<Receipt> receipts) {
+        if (receipts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<FiscalKey> inserted = new ArrayList<>(receipts.size());
+        for (int from = 0; from < receipts.size(); from += INSERT_CHUNK_SIZE) {
+            List<Receipt> chunk = receipts.subList(from, Math.min(from + INSERT_CHUNK_SIZE, receipts.size()));
+            inserted.addAll(insertChunk(chunk));
+        }
+        if (!inserted.isEmpty()) {
+            List<Receipt> insertedReceipts = resolveInserted(receipts, inserted);
+            applyInsertedToStats(insertedReceipts);
+            rollupRepository.applyInserted(insertedReceipts);
+        }
+
+        log.debug("Пакетная вставка: вставлено {} из {} чеков", inserted.size(), receipts.size());
+        return inserted;
+    }
+
+    /**
+     * Дописать чеки ленты без подключенного владельца в буфер receipt_tape_buffer.
+     */
+    public void insertIntoTapeBuffer(List<GetReceiptsTapeResponse.Receipt> receipts) {
+        if (receipts.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_BUFFER_SQL, receipts, INSERT_CHUNK_SIZE, (ps, receipt) -> {
+            ps.setObject(1, UuidV7.generate());
+            ps.setString(2, receipt.getUserIdentifier());
+            ps.setString(3, receipt.getPhone());
+            ps.setString(4, receipt.getEmail());
+            ps.setString(5, receipt.getReceiveDate());
+            ps.setString(6, receipt.getSourceCode());
+            ps.setBytes(7, receipt.getJson());
+            ps.setObject(8, now);
+        });
+
+        log.debug("В буфер ленты записано {} чеков", receipts.size());
+    }
+
+    /**
+     * Записать необработанные чеки в receipt_dead_letters, пропуская уже записанные.
+     *
+     * @return сколько записей добавлено
+     */
+    public int insertDeadLetters(List<ReceiptFailure> failures) {
+        if (failures.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_DEAD_LETTER_SQL, failures, INSERT_CHUNK_SIZE, (ps, failure) -> {
+            GetReceiptsTapeResponse.Receipt receipt = failure.receipt();
+            ps.setObject(1, UuidV7.generate());
+            ps.setString(2, payloadHash(receipt));
+            ps.setString(3, receipt.getUserIdentifier());
+            ps.setString(4, receipt.getPhone());
+            ps.setString(5, receipt.getEmail());
+            ps.setString(6, receipt.getReceiveDate());
+            ps.setString(7, receipt.getSourceCode());
+            ps.setBytes(8, receipt.getJson());
+            ps.setString(9, failure.stage().name());
+            ps.setString(10, failure.error().getClass().getName());
+            ps.setString(11, failure.error().getMessage());
+            ps.setObject(12, now);
+            ps.setObject(13, now);
+        });
+        return Arrays.stream(counts).flatMapToInt(Arrays::stream).map(count -> Math.max(count, 0)).sum();
+    }
+
+    /**
+     * SHA-256 содержимого чека ленты (hex). Та же формула в db/schema/003-receipt-dead-letters-payload-hash.sql:
+     * UserIdentifier, Phone, ReceiveDate, SourceCode через перевод строки (null - пустая строка),
+     * перевод строки и байты Json.
+     */
+    static String payloadHash(GetReceiptsTapeResponse.Receipt receipt) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+        String header = String.join("\n",
+                Objects.requireNonNullElse(receipt.getUserIdentifier(), ""),
+                Objects.requireNonNullElse(receipt.getPhone(), ""),
+                Objects.requireNonNullElse(receipt.getReceiveDate(), ""),
+                Objects.requireNonNullElse(receipt.getSourceCode(), "")) + "\n";
+        digest.update(header.getBytes(StandardCharsets.UTF_8));
+        if (receipt.getJson() != null) {
+            digest.update(receipt.getJson());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Удалить пакет чеков пользователя (самые старые по receipt_date_time) вместе с уменьшением сводки.
+     *
+     * @return сколько чеков удалено
+     */
+    @Transactional
+    public int deleteBatchByUserId(UUID userId, int limit) {
+        return deleteBatch(DELETE_BATCH_BY_USER_ID_SQL, userId, limit);
+    }
+
+    /**
+     * Удалить пакет чеков по userIdentifier (номер телефона, самые ранние по вставке, порядок по id)
+     * вместе с уменьшением сводки.
+     *
+     * @return сколько чеков удалено
+     */
+    @Transactional
+    public int deleteBatchByUserIdentifier(String userIdentifier, int limit) {
+        return deleteBatch(DELETE_BATCH_BY_USER_IDENTIFIER_SQL, userIdentifier, limit);
+    }
+
+    /**
+     * Вычесть чеки секции из сводки user_receipt_stats. Вызывается в транзакции удаления секции до DROP.
+     * Дневной срез трат не трогается: история трат переживает срок хранения самих чеков.
+     *
+     * @param partition имя секции receipts
+     */
+    public void subtractPartitionFromStats(String partition) {
+        int users = jdbcTemplate.update(String.format(SUBTRACT_PARTITION_STATS_SQL, partition));
+        log.debug("Сводка уменьшена на содержимое секции {} у {} пользователей", partition, users);
+    }
+
+    /**
+     * Довести сводку после удаления секции: пересчитать границы дат и убрать пустые строки
+     *
+     * @param removedBefore верхняя граница удаленных чеков
+     */
+    public void refreshStatsAfterPartitionDrop(LocalDateTime removedBefore) {
+        jdbcTemplate.update(REFRESH_STATS_BOUNDS_SQL, removedBefore);
+        jdbcTemplate.update(DELETE_ALL_EMPTY_STATS_SQL);
+    }
+
+    /**
+     * Заполнить сводку по уже сохраненным чекам
+     *
+     * @return сколько строк сводки добавлено
+     */
+    @Transactional
+    public int backfillStats() {
+        return jdbcTemplate.update(BACKFILL_STATS_SQL);
+    }
+
+    /**
+     * Посчитать сводку пользователя напрямую по receipts, без записи в user_receipt_stats.
+     * Нужно только пока сводка не дозаполнена.
+     */
+    public UserReceiptStats aggregateUserStats(UUID userId) {
+        return jdbcTemplate.queryForObject(AGGREGATE_USER_SQL, (rs, rowNum) -> UserReceiptStats.builder()
+                .userId(userId)
+                .receiptCount(rs.getLong("receipt_count"))
+                .totalAmount(rs.getBigDecimal("total_amount"))
+                .oldestReceiptDate(rs.getObject("oldest_receipt_date", LocalDateTime.class))
+                .newestReceiptDate(rs.getObject("newest_receipt_date", LocalDateTime.class))
+                .build(), userId);
+    }
+
+    /**
+     * Потоково прочитать фискальные ключи всех чеков (курсором, без загрузки в память).
+     */
+    @Transactional(readOnly = true)
+    public void streamFiscalKeys(Consumer<FiscalKey> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT fiscal_sign, fiscal_document_number, fiscal_drive_number FROM receipts");
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, (ResultSet rs) -> {
+            consumer.accept(new FiscalKey(
+                    rs.getLong("fiscal_sign"),
+                    rs.getLong("fiscal_document_number"),
+                    rs.getString("fiscal_drive_number")
+            ));
+        });
+    }
+
+    private int deleteBatch(String sql, Object key, int limit) {
+        List<Receipt> deleted = jdbcTemplate.query(sql, (rs, rowNum) -> Receipt.builder()
+                .userId(rs.getObject("user_id", UUID.class))
+                .totalSum(rs.getBigDecimal("total_sum"))
+                .receiptDateTime(rs.getObject("receipt_date_time", LocalDateTime.class))
+                .sourceCode(rs.getString("source_code"))
+                .userInn(rs.getString("user_inn"))
+                .build(), key, limit);
+
+        if (deleted.isEmpty()) {
+            return 0;
+        }
+
+        Map<UUID, StatsDelta> deltas = new TreeMap<>();
+        for (Receipt receipt : deleted) {
+            deltas.computeIfAbsent(receipt.getUserId(), id -> new StatsDelta()).add(receipt.getTotalSum(), null);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Map.Entry<UUID, StatsDelta>> entries = new ArrayList<>(deltas.entrySet());
+        jdbcTemplate.batchUpdate(DECREMENT_STATS_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setLong(1, entry.getValue().count);
+            ps.setBigDecimal(2, entry.getValue().amount);
+            ps.setObject(3, entry.getKey());
+            ps.setObject(4, entry.getKey());
+            ps.setObject(5, now);
+            ps.setObject(6, entry.getKey());
+        });
+        jdbcTemplate.batchUpdate(DELETE_EMPTY_STATS_SQL, entries, entries.size(),
+                (ps, entry) -> ps.setObject(1, entry.getKey()));
+
+        rollupRepository.applyDeleted(deleted);
+        return deleted.size();
+    }
+
+    private List<Receipt> resolveInserted(List<Receipt> receipts, List<FiscalKey> inserted) {
+        Map<FiscalKey, Receipt> byKey = new HashMap<>(receipts.size() * 2);
+        for (Receipt receipt : receipts) {
+            byKey.put(new FiscalKey(receipt.getFiscalSign(), receipt.getFiscalDocumentNumber(),
+                    receipt.getFiscalDriveNumber()), receipt);
+        }
+        return inserted.stream().map(byKey::get).toList();
+    }
+
+    private void applyInsertedToStats(List<Receipt> insertedReceipts) {
+        // Строки сводки блокируются в одном порядке, чтобы параллельные пакеты не ловили взаимоблокировку
+        Map<UUID, StatsDelta> deltas = new TreeMap<>();
+        for (Receipt receipt : insertedReceipts) {
+            deltas.computeIfAbsent(receipt.getUserId(), id -> new StatsDelta())
+                    .add(receipt.getTotalSum(), receipt.getReceiptDateTime());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Map.Entry<UUID, StatsDelta>> entries = new ArrayList<>(deltas.entrySet());
+        int[][] updated = jdbcTemplate.batchUpdate(INCREMENT_STATS_SQL, entries, INSERT_CHUNK_SIZE, (ps, entry) -> {
+            StatsDelta delta = entry.getValue();
+            ps.setLong(1, delta.count);
+            ps.setBigDecimal(2, delta.amount);
+            ps.setObject(3, delta.oldest);
+            ps.setObject(4, delta.newest);
+            ps.setObject(5, now);
+            ps.setObject(6, entry.getKey());
+        });
+
+        List<Map.Entry<UUID, StatsDelta>> missing = new ArrayList<>();
+        int index = 0;
+        for (int[] chunk : updated) {
+            for (int count : chunk) {
+                if (count == 0) {
+                    missing.add(entries.get(index));
+                }
+                index++;
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_STATS_SQL, missing, INSERT_CHUNK_SIZE, (ps, entry) -> {
+            StatsDelta delta = entry.getValue();
+            ps.setObject(1, now);
+            ps.setObject(2, entry.getKey());
+            ps.setLong(3, delta.count);
+            ps.setBigDecimal(4, delta.amount);
+            ps.setObject(5, delta.oldest);
+            ps.setObject(6, delta.newest);
+        });
+    }
+
+    private List<FiscalKey> insertChunk(List<Receipt> chunk) {
+        String sql = INSERT_PREFIX + String.join(", ", Collections.nCopies(chunk.size(), VALUES_ROW)) + insertSuffix;
+        LocalDateTime now = LocalDateTime.now();
+
+        return jdbcTemplate.query(sql, ps -> {
+            int i = 1;
+            for (Receipt receipt : chunk) {
+                if (receipt.getId() == null) {
+                    receipt.setId(UuidV7.generate());
+                }
+                receipt.setCreatedAt(now);
+                receipt.setUpdatedAt(now);
+
+                ps.setObject(i++, receipt.getId());
+                ps.setObject(i++, receipt.getUserId());
+                ps.setString(i++, receipt.getUserIdentifier());
+                ps.setString(i++, receipt.getPhone());
+                ps.setString(i++, receipt.getEmail());
+                ps.setLong(i++, receipt.getFiscalSign());
+                ps.setLong(i++, receipt.getFiscalDocumentNumber());
+                ps.setString(i++, receipt.getFiscalDriveNumber());
+                ps.setObject(i++, receipt.getReceiptDateTime());
+                ps.setObject(i++, receipt.getReceiveDate());
+                ps.setBigDecimal(i++, receipt.getTotalSum());
+                ps.setString(i++, receipt.getSourceCode());
+                ps.setObject(i++, receipt.getOperationType(), Types.INTEGER);
+                ps.setString(i++, receipt.getUserInn());
+                ps.setString(i++, receipt.getRetailPlace());
+                ps.setBytes(i++, receipt.getRawJsonBytes() != null
+                        ? receipt.getRawJsonBytes()
+                        : receipt.getRawJson().getBytes(StandardCharsets.UTF_8));
+                ps.setObject(i++, receipt.getCreatedAt());
+                ps.setObject(i++, receipt.getUpdatedAt());
+            }
+        }, (rs, rowNum) -> new FiscalKey(
+                rs.getLong("fiscal_sign"),
+                rs.getLong("fiscal_document_number"),
+                rs.getString("fiscal_drive_number")
+        ));
+    }
+}
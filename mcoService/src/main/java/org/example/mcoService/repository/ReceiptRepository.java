@@ -1,20 +1,33 @@
 package org.example.mcoService.repository;
 
+import org.example.mcoService.dto.receipt.FiscalKey;
+import org.example.mcoService.dto.receipt.ReceiptListView;
 import org.example.mcoService.entity.Receipt;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface ReceiptRepository extends JpaRepository<Receipt, UUID> {
 
+    /**
+     * Колонки {@link ReceiptListView} для native-запросов (алиасы в кавычках, чтобы сохранить регистр)
+     */
+    String LIST_VIEW_COLUMNS = "id, phone, email, fiscal_sign AS \"fiscalSign\", " +
+            "fiscal_document_number AS \"fiscalDocumentNumber\", fiscal_drive_number AS \"fiscalDriveNumber\", " +
+            "receipt_date_time AS \"receiptDateTime\", receive_date AS \"receiveDate\", total_sum AS \"totalSum\", " +
+            "source_code AS \"sourceCode\", operation_type AS \"operationType\", user_inn AS \"userInn\", " +
+            "retail_place AS \"retailPlace\"";
+
     /**
      * Проверка существования чека по фискальным данным (для дедупликации)
      */
@@ -24,58 +37,82 @@ public interface ReceiptRepository extends JpaRepository<Receipt, UUID> {
             String fiscalDriveNumber
     );
 
+    /**
+     * Пакетная дедупликация: фискальные ключи уже сохраненных чеков по списку ФП.
+     * Запрос идет по уникальному индексу (fiscal_sign, fiscal_document_number, fiscal_drive_number),
+     * точное совпадение тройки проверяется на стороне сервиса.
+     * Дата чека однозначно определяется фискальным ключом, поэтому диапазон дат пакета
+     * ничего не отсекает, но при секционировании ограничивает поиск секциями этих месяцев.
+     */
+    @Query("SELECT new org.example.mcoService.dto.receipt.FiscalKey(" +
+            "r.fiscalSign, r.fiscalDocumentNumber, r.fiscalDriveNumber) " +
+            "FROM Receipt r WHERE r.fiscalSign IN :fiscalSigns " +
+            "AND r.receiptDateTime BETWEEN :from AND :to")
+    List<FiscalKey> findFiscalKeysByFiscalSignIn(@Param("fiscalSigns") Collection<Long> fiscalSigns,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("to") LocalDateTime to);
+
     /**
      * Получить все чеки пользователя
      */
     Page<Receipt> findByUserIdOrderByReceiptDateTimeDesc(UUID userId, Pageable pageable);
 
     /**
-     * Удалить все чеки пользователя по userId
+     * Страница чеков пользователя для списка (без raw_json)
      */
-    @Modifying
-    @Transactional
-    @Query("DELETE FROM Receipt r WHERE r.userId = :userId")
-    int deleteByUserId(@Param("userId") UUID userId);
+    @Query(value = "SELECT r.id AS id, r.phone AS phone, r.email AS email, r.fiscalSign AS fiscalSign, " +
+            "r.fiscalDocumentNumber AS fiscalDocumentNumber, r.fiscalDriveNumber AS fiscalDriveNumber, " +
+            "r.receiptDateTime AS receiptDateTime, r.receiveDate AS receiveDate, r.totalSum AS totalSum, " +
+            "r.sourceCode AS sourceCode, r.operationType AS operationType, r.userInn AS userInn, " +
+            "r.retailPlace AS retailPlace " +
+            "FROM Receipt r WHERE r.userId = :userId",
+            countQuery = "SELECT COUNT(r) FROM Receipt r WHERE r.userId = :userId")
+    Page<ReceiptListView> findListByUserId(@Param("userId") UUID userId, Pageable pageable);
 
     /**
-     * Удалить все чеки пользователя по userIdentifier (номер телефона)
+     * Страница чеков пользователя по смещению без COUNT(*): общее количество берется из user_receipt_stats
      */
-    @Modifying
-    @Transactional
-    @Query("DELETE FROM Receipt r WHERE r.userIdentifier = :userIdentifier")
-    int deleteByUserIdentifier(@Param("userIdentifier") String userIdentifier);
+    @Query(value = "SELECT " + LIST_VIEW_COLUMNS + " FROM receipts WHERE user_id = :userId " +
+            "ORDER BY receipt_date_time DESC, id LIMIT :limit OFFSET :offset",
+            nativeQuery = true)
+    List<ReceiptListView> findOffsetPageByUserId(@Param("userId") UUID userId,
+                                                 @Param("limit") int limit,
+                                                 @Param("offset") long offset);
 
     /**
-     * Получить количество чеков пользователя по userId
+     * Чек пользователя целиком, включая raw_json
      */
-    @Query("SELECT COUNT(r) FROM Receipt r WHERE r.userId = :userId")
-    long countByUserId(@Param("userId") UUID userId);
+    Optional<Receipt> findByIdAndUserId(UUID id, UUID userId);
 
     /**
-     * Получить количество чеков по userIdentifier
+     * Первая страница keyset-пагинации по индексу (user_id, receipt_date_time DESC, id)
      */
-    @Query("SELECT COUNT(r) FROM Receipt r WHERE r.userIdentifier = :userIdentifier")
-    long countByUserIdentifier(@Param("userIdentifier") String userIdentifier);
+    @Query(value = "SELECT " + LIST_VIEW_COLUMNS + " FROM receipts WHERE user_id = :userId " +
+            "ORDER BY receipt_date_time DESC, id LIMIT :limit",
+            nativeQuery = true)
+    List<ReceiptListView> findFirstPageByUserId(@Param("userId") UUID userId, @Param("limit") int limit);
 
     /**
-     * Пакетное удаление чеков по userId (native query для оптимизации)
+     * Следующая страница keyset-пагинации: строки строго после курсора (receiptDateTime, id)
      */
-    @Modifying
-    @Transactional
-    @Query(value = "DELETE FROM receipts WHERE user_id = :userId " +
-            "AND id IN (SELECT id FROM receipts WHERE user_id = :userId " +
-            "ORDER BY created_at LIMIT :limit)",
+    @Query(value = "SELECT " + LIST_VIEW_COLUMNS + " FROM receipts WHERE user_id = :userId " +
+            "AND (receipt_date_time < :dateTime OR (receipt_date_time = :dateTime AND id > :id)) " +
+            "ORDER BY receipt_date_time DESC, id LIMIT :limit",
             nativeQuery = true)
-    int deleteBatchByUserId(@Param("userId") UUID userId, @Param("limit") int limit);
+    List<ReceiptListView> findPageByUserIdAfter(@Param("userId") UUID userId,
+                                        @Param("dateTime") LocalDateTime dateTime,
+                                        @Param("id") UUID id,
+                                        @Param("limit") int limit);
 
     /**
-     * Пакетное удаление чеков по userIdentifier (native query для оптимизации)
+     * Получить количество чеков пользователя по userId
      */
-    @Modifying
-    @Transactional
-    @Query(value = "DELETE FROM receipts WHERE user_identifier = :userIdentifier " +
-            "AND id IN (SELECT id FROM receipts WHERE user_identifier = :userIdentifier " +
-            "ORDER BY created_at LIMIT :limit)",
-            nativeQuery = true)
-    int deleteBatchByUserIdentifier(@Param("userIdentifier") String userIdentifier, @Param("limit") int limit);
-}
\ No newline at end of file
+    @Query("SELECT COUNT(r) FROM Receipt r WHERE r.userId = :userId")
+    long countByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Получить количество чеков по userIdentifier
+     */
+    @Query("SELECT COUNT(r) FROM Receipt r WHERE r.userIdentifier = :userIdentifier")
+    long countByUserIdentifier(@Param("userIdentifier") String userIdentifier);
+}
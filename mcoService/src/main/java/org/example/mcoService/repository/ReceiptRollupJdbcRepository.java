@@ -0,0 +1,228 @@
+package org.example.mcoService.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.entity.Receipt;
+import org.example.mcoService.enums.SpendPeriod;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Дневной срез трат receipt_daily_rollup: (user_id, day, source_code, user_inn) → количество и сумма.
+ * Изменяется только из {@link ReceiptJdbcRepository} в транзакции вставки или удаления чеков.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ReceiptRollupJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Новая строка среза пересчитывается по receipts за этот день (включая только что вставленные чеки),
+     * существующей прибавляется дельта пакета - так же, как для user_receipt_stats.
+     */
+    private static final String UPSERT_SQL = "INSERT INTO receipt_daily_rollup (" +
+            "user_id, day, source_code, user_inn, receipt_count, total_amount, updated_at) " +
+            "SELECT ?, ?, ?, ?, COUNT(*), COALESCE(SUM(r.total_sum), 0), ? FROM receipts r " +
+            "WHERE r.user_id = ? AND r.receipt_date_time >= ? AND r.receipt_date_time < ? " +
+            "AND r.source_code = ? AND COALESCE(r.user_inn, '') = ? " +
+            "ON CONFLICT (user_id, day, source_code, user_inn) DO UPDATE SET " +
+            "receipt_count = receipt_daily_rollup.receipt_count + ?, " +
+            "total_amount = receipt_daily_rollup.total_amount + ?, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private static final String DECREMENT_SQL = "UPDATE receipt_daily_rollup SET " +
+            "receipt_count = receipt_count - ?, total_amount = total_amount - ?, updated_at = ? " +
+            "WHERE user_id = ? AND day = ? AND source_code = ? AND user_inn = ?";
+
+    private static final String DELETE_EMPTY_SQL = "DELETE FROM receipt_daily_rollup " +
+            "WHERE user_id = ? AND day = ? AND source_code = ? AND user_inn = ? AND receipt_count <= 0";
+
+    /**
+     * Срезы за дни без новых чеков заполняются разово; уже существующие строки не трогаются
+     */
+    private static final String BACKFILL_SQL = "INSERT INTO receipt_daily_rollup (" +
+            "user_id, day, source_code, user_inn, receipt_count, total_amount, updated_at) " +
+            "SELECT user_id, CAST(receipt_date_time AS date), source_code, COALESCE(user_inn, ''), " +
+            "COUNT(*), SUM(total_sum), now() FROM receipts " +
+            "GROUP BY user_id, CAST(receipt_date_time AS date), source_code, COALESCE(user_inn, '') " +
+            "ON CONFLICT (user_id, day, source_code, user_inn) DO NOTHING";
+
+    private static final String SPEND_BY_PERIOD_SQL = "SELECT CAST(date_trunc(?, day) AS date) AS period_start, " +
+            "SUM(receipt_count) AS receipt_count, SUM(total_amount) AS total_amount " +
+            "FROM receipt_daily_rollup WHERE user_id = ? AND day >= ? AND day < ? " +
+            "GROUP BY 1 ORDER BY 1";
+
+    private static final String USER_TOTALS_SQL = "SELECT user_id, " +
+            "SUM(receipt_count) AS receipt_count, SUM(total_amount) AS total_amount " +
+            "FROM receipt_daily_rollup WHERE user_id IN (:userIds) AND day >= :from AND day < :to " +
+            "GROUP BY user_id";
+
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator
+            .comparing(RollupKey::userId)
+            .thenComparing(RollupKey::day)
+            .thenComparing(RollupKey::sourceCode)
+            .thenComparing(RollupKey::userInn);
+
+    /**
+     * Траты за период
+     *
+     * @param periodStart первый день недели или месяца
+     */
+    public record PeriodSpend(LocalDate periodStart, long receiptCount, BigDecimal totalAmount) {
+    }
+
+    /**
+     * Траты пользователя за диапазон дней
+     */
+    public record UserSpend(UUID userId, long receiptCount, BigDecimal totalAmount) {
+    }
+
+    private record RollupKey(UUID userId, LocalDate day, String sourceCode, String userInn) {
+
+        static RollupKey of(Receipt receipt) {
+            return new RollupKey(receipt.getUserId(), receipt.getReceiptDateTime().toLocalDate(),
+                    receipt.getSourceCode(), Objects.requireNonNullElse(receipt.getUserInn(), ""));
+        }
+    }
+
+    private static final class Delta {
+        long count;
+        BigDecimal amount = BigDecimal.ZERO;
+
+        void add(BigDecimal sum) {
+            count++;
+            if (sum != null) {
+                amount = amount.add(sum);
+            }
+        }
+    }
+
+    /**
+     * Учесть вставленные чеки. Вызывается в транзакции вставки.
+     */
+    public void applyInserted(Collection<Receipt> receipts) {
+        List<Map.Entry<RollupKey, Delta>> entries = aggregate(receipts);
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(UPSERT_SQL, entries, BATCH_SIZE, (ps, entry) -> {
+            RollupKey key = entry.getKey();
+            Delta delta = entry.getValue();
+            ps.setObject(1, key.userId());
+            ps.setObject(2, key.day());
+            ps.setString(3, key.sourceCode());
+            ps.setString(4, key.userInn());
+            ps.setObject(5, now);
+            ps.setObject(6, key.userId());
+            ps.setObject(7, key.day().atStartOfDay());
+            ps.setObject(8, key.day().plusDays(1).atStartOfDay());
+            ps.setString(9, key.sourceCode());
+            ps.setString(10, key.userInn());
+            ps.setLong(11, delta.count);
+            ps.setBigDecimal(12, delta.amount);
+        });
+    }
+
+    /**
+     * Учесть удаленные чеки. Вызывается в транзакции удаления.
+     */
+    public void applyDeleted(Collection<Receipt> receipts) {
+        List<Map.Entry<RollupKey, Delta>> entries = aggregate(receipts);
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(DECREMENT_SQL, entries, BATCH_SIZE, (ps, entry) -> {
+            RollupKey key = entry.getKey();
+            ps.setLong(1, entry.getValue().count);
+            ps.setBigDecimal(2, entry.getValue().amount);
+            ps.setObject(3, now);
+            setKey(ps, 4, key);
+        });
+        jdbcTemplate.batchUpdate(DELETE_EMPTY_SQL, entries, BATCH_SIZE, (ps, entry) -> setKey(ps, 1, entry.getKey()));
+    }
+
+    /**
+     * Заполнить срез по уже сохраненным чекам
+     *
+     * @return сколько строк среза добавлено
+     */
+    @Transactional
+    public int backfill() {
+        return jdbcTemplate.update(BACKFILL_SQL);
+    }
+
+    /**
+     * Траты пользователя по неделям или месяцам
+     *
+     * @param from первый день диапазона (включительно)
+     * @param to   день после конца диапазона (не включительно)
+     */
+    public List<PeriodSpend> findSpendByPeriod(UUID userId, SpendPeriod period, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(SPEND_BY_PERIOD_SQL, (rs, rowNum) -> new PeriodSpend(
+                rs.getObject("period_start", LocalDate.class),
+                rs.getLong("receipt_count"),
+                rs.getBigDecimal("total_amount")
+        ), period.getTruncUnit(), userId, from, to);
+    }
+
+    /**
+     * Итоги по каждому из пользователей за диапазон дней (пользователи без чеков не возвращаются)
+     */
+    public List<UserSpend> findUserTotals(Collection<UUID> userIds, LocalDate from, LocalDate to) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userIds", userIds)
+                .addValue("from", from)
+                .addValue("to", to);
+        return namedParameterJdbcTemplate.query(USER_TOTALS_SQL, params, (rs, rowNum) -> new UserSpend(
+                rs.getObject("user_id", UUID.class),
+                rs.getLong("receipt_count"),
+                rs.getBigDecimal("total_amount")
+        ));
+    }
+
+    private List<Map.Entry<RollupKey, Delta>> aggregate(Collection<Receipt> receipts) {
+        // Строки среза блокируются в одном порядке, чтобы параллельные пакеты не ловили взаимоблокировку
+        Map<RollupKey, Delta> deltas = new TreeMap<>(KEY_ORDER);
+        for (Receipt receipt : receipts) {
+            deltas.computeIfAbsent(RollupKey.of(receipt), key -> new Delta()).add(receipt.getTotalSum());
+        }
+        return new ArrayList<>(deltas.entrySet());
+    }
+
+    private static void setKey(PreparedStatement ps, int index, RollupKey key) throws SQLException {
+        ps.setObject(index, key.userId());
+        ps.setObject(index + 1, key.day());
+        ps.setString(index + 2, key.sourceCode());
+        ps.setString(index + 3, key.userInn());
+    }
+}
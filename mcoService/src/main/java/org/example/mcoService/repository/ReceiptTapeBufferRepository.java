@@ -0,0 +1,42 @@
+package org.example.mcoService.repository;
+
+import org.example.mcoService.entity.ReceiptTapeBufferEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ReceiptTapeBufferRepository extends JpaRepository<ReceiptTapeBufferEntry, UUID> {
+
+    /**
+     * Пакет буферизованных чеков пользователя по UserIdentifier или Phone
+     */
+    @Query("SELECT e FROM ReceiptTapeBufferEntry e " +
+            "WHERE e.userIdentifier IN :identifiers OR e.phone IN :identifiers " +
+            "ORDER BY e.bufferedAt")
+    List<ReceiptTapeBufferEntry> findByIdentifiers(@Param("identifiers") Collection<String> identifiers,
+                                                   Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM ReceiptTapeBufferEntry e WHERE e.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Пакетное удаление устаревших записей буфера (native query для оптимизации)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM receipt_tape_buffer WHERE id IN (" +
+            "SELECT id FROM receipt_tape_buffer WHERE buffered_at < :before LIMIT :limit)",
+            nativeQuery = true)
+    int deleteBatchBufferedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
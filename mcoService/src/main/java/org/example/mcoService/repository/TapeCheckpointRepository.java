@@ -0,0 +1,9 @@
+package org.example.mcoService.repository;
+
+import org.example.mcoService.entity.TapeCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TapeCheckpointRepository extends JpaRepository<TapeCheckpoint, String> {
+}
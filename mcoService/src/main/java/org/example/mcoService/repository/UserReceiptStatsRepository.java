@@ -0,0 +1,11 @@
+package org.example.mcoService.repository;
+
+import org.example.mcoService.entity.UserReceiptStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface UserReceiptStatsRepository extends JpaRepository<UserReceiptStats, UUID> {
+}
@@ -0,0 +1,97 @@
+package org.example.mcoService.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.config.McoProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Адаптивный темп опроса ленты чеков.
+ * <ul>
+ *     <li>ФНС сообщает TotalExpectedRemainingPolls &gt; 0 - следующий проход через minDelay
+ *     и глубиной на все оставшиеся порции;</li>
+ *     <li>лента дочитана - пауза рассчитывается по сглаженному потоку новых чеков так,
+ *     чтобы за проход набиралось около targetReceiptsPerRun; без потока пауза удваивается до maxDelay;</li>
+ *     <li>ошибка - экспоненциальная пауза от baseDelay до maxDelay.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class AdaptiveTapeSchedule {
+
+    /** Вес нового замера в экспоненциальном сглаживании потока чеков */
+    private static final double RATE_SMOOTHING = 0.3;
+
+    /** Глубина прохода, пока объем ленты неизвестен или она дочитана */
+    private static final int PROBE_PAGES = 1;
+
+    private final McoProperties.Tape tapeProperties;
+
+    private Duration nextDelay;
+    private int nextMaxPages = Integer.MAX_VALUE;
+    private int consecutiveErrors;
+    private double receiptsPerSecond;
+    private long lastRunStartedAt;
+
+    public AdaptiveTapeSchedule(McoProperties properties) {
+        this.tapeProperties = properties.getTape();
+        this.nextDelay = tapeProperties.getMinDelay();
+    }
+
+    /** Пауза перед следующим проходом */
+    public synchronized Duration nextDelay() {
+        return nextDelay;
+    }
+
+    /** Сколько порций читать в следующем проходе */
+    public synchronized int nextMaxPages() {
+        return nextMaxPages;
+    }
+
+    public synchronized void onSuccess(ReceiptTapeConsumer.TapeRunResult result, long startedAtMillis) {
+        consecutiveErrors = 0;
+
+        if (lastRunStartedAt > 0) {
+            double seconds = Math.max(1, (startedAtMillis - lastRunStartedAt) / 1000.0);
+            receiptsPerSecond = RATE_SMOOTHING * (result.receipts() / seconds)
+                    + (1 - RATE_SMOOTHING) * receiptsPerSecond;
+        }
+        lastRunStartedAt = startedAtMillis;
+
+        if (result.remainingPolls() > 0) {
+            // Догоняем ленту: без паузы и сразу на все объявленные порции
+            nextDelay = tapeProperties.getMinDelay();
+            nextMaxPages = (int) Math.min(Integer.MAX_VALUE, result.remainingPolls() + 1);
+        } else if (receiptsPerSecond > 0.0001) {
+            long seconds = (long) (tapeProperties.getTargetReceiptsPerRun() / receiptsPerSecond);
+            nextDelay = clamp(Duration.ofSeconds(seconds));
+            nextMaxPages = Integer.MAX_VALUE;
+        } else {
+            // Пустая лента: отступаем, чтобы не тратить SOAP-вызовы
+            nextDelay = clamp(nextDelay.multipliedBy(2));
+            nextMaxPages = PROBE_PAGES;
+        }
+
+        log.debug("Следующий опрос ленты через {} (порций не более {}, поток {} чеков/с, осталось {})",
+                nextDelay, nextMaxPages, String.format("%.3f", receiptsPerSecond), result.remainingPolls());
+    }
+
+    public synchronized void onFailure() {
+        consecutiveErrors++;
+        Duration backoff = tapeProperties.getBaseDelay().multipliedBy(1L << Math.min(consecutiveErrors - 1, 10));
+        nextDelay = clamp(backoff);
+        nextMaxPages = PROBE_PAGES;
+        log.debug("Ошибка опроса ленты подряд: {}, следующий опрос через {}", consecutiveErrors, nextDelay);
+    }
+
+    private Duration clamp(Duration delay) {
+        if (delay.compareTo(tapeProperties.getMinDelay()) < 0) {
+            return tapeProperties.getMinDelay();
+        }
+        if (delay.compareTo(tapeProperties.getMaxDelay()) > 0) {
+            return tapeProperties.getMaxDelay();
+        }
+        return delay;
+    }
+}
@@ -161,6 +161,50 @@ public class AutoNotificationService {
         }
     }
 
+    /**
+     * Отправить ежемесячную статистику по чекам.
+     * Вызывается по расписанию из MonthlyStatisticsScheduler.
+     *
+     * @param phoneNumber номер телефона пользователя
+     * @param month       название месяца
+     * @param count       количество чеков за месяц
+     * @param totalAmount общая сумма чеков
+     * @param average     средний чек
+     */
+    public void sendMonthlyStatisticsNotification(String phoneNumber, String month, long count,
+                                                  String totalAmount, String average) {
+        log.info("Автоматическая отправка уведомления MONTHLY_STATISTICS для {}: {} чеков на {}₽ за {}",
+                phoneNumber, count, totalAmount, month);
+
+        try {
+            NotificationParams params = NotificationParams.builder()
+                    .phoneNumber(phoneNumber)
+                    .templateVariables(java.util.Map.of(
+                            "month", month,
+                            "count", String.valueOf(count),
+                            "amount", totalAmount,
+                            "average", average
+                    ))
+                    .build();
+
+            PostNotificationResponse response = mcoService.sendTypedNotification(
+                    phoneNumber,
+                    NotificationType.MONTHLY_STATISTICS,
+                    params
+            );
+
+            log.info("Уведомление MONTHLY_STATISTICS успешно отправлено для {}, requestId: {}",
+                    phoneNumber, response.getRequestId());
+
+        } catch (McoException e) {
+            log.warn("Не удалось отправить уведомление MONTHLY_STATISTICS для {}: {} - {}",
+                    phoneNumber, e.getErrorCode().getCode(), e.getErrorMessage());
+        } catch (Exception e) {
+            log.error("Неожиданная ошибка при отправке уведомления MONTHLY_STATISTICS для {}",
+                    phoneNumber, e);
+        }
+    }
+
     /**
      * Отправить напоминание об истечении срока хранения чеков.
      * Вызывается по расписанию для пользователей с непросмотренными чеками.
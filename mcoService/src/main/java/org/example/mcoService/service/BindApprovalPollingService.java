@@ -11,6 +11,8 @@ import org.example.mcoService.websocket.BindStatusWebSocketHandler;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @Slf4j
@@ -22,8 +24,7 @@ public class BindApprovalPollingService {
     private final UserBindingStatusRepository bindingStatusRepository;
     private final AutoNotificationService autoNotificationService;
     private final BindStatusWebSocketHandler webSocketHandler;
-    private final ReceiptMarkerService receiptMarkerService;
-    private final ReceiptService receiptService;
+    private final ReceiptTapeBufferService tapeBufferService;
 
     @Async
     @Transactional
@@ -67,11 +68,13 @@ public class BindApprovalPollingService {
                     // 3. Отправляем WebSocket уведомление о подключении
                     webSocketHandler.sendBindStatusNotification(requestId, "APPROVED", phone);
 
-                    // 4. Мгновенная синхронизация чеков после подключения
-                    syncReceiptsForUser(phone);
-
-                    // 5. Отправляем уведомление о завершении подключения (push)
-                    autoNotificationService.sendBindingCompletedNotification(phone);
+                    // 4. Мгновенная синхронизация чеков после подключения и 5. push о завершении подключения.
+                    // Выполняются после фиксации APPROVED: перенос буфера идет собственными транзакциями
+                    // и видит чеки, которые лента дописала в буфер до фиксации подключения
+                    afterCommit(() -> {
+                        syncReceiptsForUser(phone);
+                        autoNotificationService.sendBindingCompletedNotification(phone);
+                    });
 
                     return;
 
@@ -119,44 +122,40 @@ public class BindApprovalPollingService {
     }
 
     /**
-     * Мгновенная синхронизация чеков для пользователя после подключения
+     * Мгновенная синхронизация чеков для пользователя после подключения.
+     * Чеки берутся из локального буфера ленты, а не перечитыванием ленты с S_FROM_BEGINNING.
      */
     private void syncReceiptsForUser(String phone) {
         try {
             log.info("Мгновенная синхронизация чеков для пользователя {}", phone);
-            
-            // Получаем чеки с самого начала (S_FROM_BEGINNING)
-            String marker = "S_FROM_BEGINNING";
-            
-            var response = mcoService.getReceiptsByMarker(marker);
-            
-            if (response.getReceipts() != null && !response.getReceipts().isEmpty()) {
-                var userReceipts = response.getReceipts().stream()
-                        .filter(r -> phone.equals(r.getUserIdentifier()) || phone.equals(r.getPhone()))
-                        .toList();
-                
-                if (!userReceipts.isEmpty()) {
-                    var result = receiptService.saveReceipts(userReceipts);
-                    log.info("Синхронизировано {} новых чеков для {} на сумму {}",
-                            result.count(), phone, result.getTotalSumFormatted());
-                    
-                    // Отправляем WebSocket уведомление о новых чеках
-                    if (result.hasNewReceipts()) {
-                        webSocketHandler.sendNewReceiptsNotification(phone, result.count(), result.getTotalSumFormatted());
-                    }
-                }
-            }
-            
-            // Сохраняем последний маркер для последующей периодической синхронизации
-            if (response.getNextMarker() != null) {
-                receiptMarkerService.saveMarker(phone, response.getNextMarker());
+
+            var result = tapeBufferService.backfill(phone);
+            log.info("Синхронизировано {} новых чеков для {} на сумму {}",
+                    result.count(), phone, result.getTotalSumFormatted());
+
+            // Отправляем WebSocket уведомление о новых чеках
+            if (result.hasNewReceipts()) {
+                webSocketHandler.sendNewReceiptsNotification(phone, result.count(), result.getTotalSumFormatted());
             }
-            
+
         } catch (Exception e) {
             log.error("Ошибка мгновенной синхронизации чеков для {}: {}", phone, e.getMessage());
         }
     }
 
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     private UserBindingStatus.BindingStatus mapResultToBindingStatus(String result) {
         if (result == null) return UserBindingStatus.BindingStatus.PENDING;
 
@@ -0,0 +1,97 @@
+package org.example.mcoService.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.config.McoProperties;
+import org.example.mcoService.dto.receipt.FiscalKey;
+import org.example.mcoService.repository.ReceiptJdbcRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Вероятностный фильтр фискальных ключей сохраненных чеков.
+ * Отрицательный ответ означает, что чека точно нет в БД, и запрос дедупликации не нужен;
+ * положительный - только "возможно есть", тогда проверяется БД.
+ * Ключи, вставленные другими репликами, фильтр не видит, но такие чеки
+ * все равно отсекает ON CONFLICT при вставке.
+ */
+@Slf4j
+@Component
+public class FiscalKeyFilter {
+
+    private static final Funnel<FiscalKey> FISCAL_KEY_FUNNEL = (key, sink) -> sink
+            .putLong(key.fiscalSign())
+            .putLong(key.fiscalDocumentNumber())
+            .putString(key.fiscalDriveNumber(), StandardCharsets.UTF_8);
+
+    private final ReceiptJdbcRepository receiptJdbcRepository;
+    private final McoProperties.Tape tapeProperties;
+
+    private volatile BloomFilter<FiscalKey> filter;
+    private volatile boolean ready;
+
+    public FiscalKeyFilter(ReceiptJdbcRepository receiptJdbcRepository,
+                           McoProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.receiptJdbcRepository = receiptJdbcRepository;
+        this.tapeProperties = properties.getTape();
+        this.filter = newFilter();
+
+        Gauge.builder("receipts.dedup.filter.keys", this, f -> f.filter.approximateElementCount())
+                .description("Приблизительное число ключей в фильтре дедупликации чеков")
+                .register(meterRegistry);
+        Gauge.builder("receipts.dedup.filter.fpp", this, f -> f.filter.expectedFpp())
+                .description("Текущая ожидаемая доля ложных срабатываний фильтра дедупликации")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Построить фильтр по ключам из таблицы receipts.
+     * Пока фильтр строится, все ключи считаются "возможно существующими".
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        ready = false;
+        // Чеки, вставленные во время построения, попадают в новый фильтр через add
+        filter = newFilter();
+
+        long startedAt = System.currentTimeMillis();
+        try {
+            BloomFilter<FiscalKey> building = filter;
+            receiptJdbcRepository.streamFiscalKeys(building::put);
+            ready = true;
+            log.info("Фильтр дедупликации построен: ~{} ключей за {} мс, ожидаемая FPP {}",
+                    building.approximateElementCount(), System.currentTimeMillis() - startedAt,
+                    building.expectedFpp());
+        } catch (Exception e) {
+            log.error("Не удалось построить фильтр дедупликации, проверки пойдут в БД: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return false, если чека с таким ключом точно нет в БД
+     */
+    public boolean mightContain(FiscalKey key) {
+        return !ready || filter.mightContain(key);
+    }
+
+    public void addAll(Collection<FiscalKey> keys) {
+        BloomFilter<FiscalKey> current = filter;
+        keys.forEach(current::put);
+    }
+
+    private BloomFilter<FiscalKey> newFilter() {
+        return BloomFilter.create(FISCAL_KEY_FUNNEL,
+                tapeProperties.getDedupFilterExpectedKeys(),
+                tapeProperties.getDedupFilterFpp());
+    }
+}
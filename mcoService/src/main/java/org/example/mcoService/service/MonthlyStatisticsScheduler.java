@@ -0,0 +1,87 @@
+package org.example.mcoService.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.common.entity.UserBindingStatus;
+import org.example.common.repository.UserBindingStatusRepository;
+import org.example.common.repository.UserRepository;
+import org.example.mcoService.repository.ReceiptRollupJdbcRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Рассылка MONTHLY_STATISTICS в начале месяца с итогами предыдущего.
+ * Итоги берутся из дневного среза трат, receipts не сканируется.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MonthlyStatisticsScheduler {
+
+    private final UserBindingStatusRepository bindingStatusRepository;
+    private final UserRepository userRepository;
+    private final ReceiptRollupJdbcRepository rollupRepository;
+    private final AutoNotificationService autoNotificationService;
+
+    private static final int QUERY_CHUNK_SIZE = 1000;
+    private static final Locale RU = Locale.forLanguageTag("ru");
+
+    @Scheduled(cron = "0 0 10 1 * *")
+    public void sendMonthlyStatistics() {
+        YearMonth month = YearMonth.now().minusMonths(1);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        String monthName = month.getMonth().getDisplayName(TextStyle.FULL_STANDALONE, RU);
+
+        log.info("Рассылка статистики за {} подключенным пользователям", month);
+
+        // Подключенные пользователи читаются страницами по телефону, таблица целиком не загружается
+        Pageable page = PageRequest.of(0, QUERY_CHUNK_SIZE);
+        int sent = 0;
+        String after = "";
+        while (true) {
+            List<String> chunk = bindingStatusRepository.findPhoneNumbersByStatusAfter(
+                    UserBindingStatus.BindingStatus.APPROVED, after, page);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            after = chunk.get(chunk.size() - 1);
+
+            Map<UUID, String> phoneByUserId = new HashMap<>();
+            userRepository.findIdsByPhoneNumberIn(chunk)
+                    .forEach(view -> phoneByUserId.put(view.getId(), view.getPhoneNumber()));
+
+            for (ReceiptRollupJdbcRepository.UserSpend spend :
+                    rollupRepository.findUserTotals(new ArrayList<>(phoneByUserId.keySet()), from, to)) {
+                if (spend.receiptCount() == 0) {
+                    continue;
+                }
+                autoNotificationService.sendMonthlyStatisticsNotification(
+                        phoneByUserId.get(spend.userId()),
+                        monthName,
+                        spend.receiptCount(),
+                        spend.totalAmount().setScale(2).toPlainString(),
+                        ReceiptSpendService.average(spend.totalAmount(), spend.receiptCount()).toPlainString());
+                sent++;
+            }
+
+            if (chunk.size() < QUERY_CHUNK_SIZE) {
+                break;
+            }
+        }
+
+        log.info("Статистика за {} отправлена {} пользователям", month, sent);
+    }
+}
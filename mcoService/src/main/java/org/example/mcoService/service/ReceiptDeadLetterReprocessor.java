@@ -0,0 +1,114 @@
+package org.example.mcoService.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.config.McoProperties;
+import org.example.mcoService.dto.receipt.ReceiptFailure;
+import org.example.mcoService.dto.response.GetReceiptsTapeResponse;
+import org.example.mcoService.entity.ReceiptDeadLetter;
+import org.example.mcoService.repository.ReceiptDeadLetterRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Фоновая переобработка чеков из receipt_dead_letters.
+ * Успешно обработанные записи удаляются, у остальных растет счетчик попыток;
+ * исчерпавшие попытки остаются в таблице для ручного разбора.
+ */
+@Slf4j
+@Service
+public class ReceiptDeadLetterReprocessor {
+
+    private final ReceiptDeadLetterRepository deadLetterRepository;
+    private final ReceiptService receiptService;
+    private final TransactionTemplate transactionTemplate;
+    private final McoProperties.Tape tapeProperties;
+
+    public ReceiptDeadLetterReprocessor(ReceiptDeadLetterRepository deadLetterRepository,
+                                        ReceiptService receiptService,
+                                        TransactionTemplate transactionTemplate,
+                                        McoProperties properties) {
+        this.deadLetterRepository = deadLetterRepository;
+        this.receiptService = receiptService;
+        this.transactionTemplate = transactionTemplate;
+        this.tapeProperties = properties.getTape();
+    }
+
+    @Scheduled(fixedDelay = 900_000, initialDelay = 120_000)
+    public void reprocessDeadLetters() {
+        // Записи, тронутые в этом проходе, повторно не выбираются
+        LocalDateTime runStartedAt = LocalDateTime.now();
+        int recovered = 0;
+        int failed = 0;
+
+        try {
+            while (true) {
+                int[] batch = transactionTemplate.execute(status -> reprocessBatch(runStartedAt));
+                if (batch == null || batch[0] + batch[1] == 0) {
+                    break;
+                }
+                recovered += batch[0];
+                failed += batch[1];
+            }
+        } catch (Exception e) {
+            log.error("Ошибка переобработки receipt_dead_letters: {}", e.getMessage(), e);
+        }
+
+        if (recovered + failed > 0) {
+            log.info("Переобработка receipt_dead_letters: восстановлено {}, снова с ошибкой {}", recovered, failed);
+        }
+    }
+
+    private int[] reprocessBatch(LocalDateTime runStartedAt) {
+        List<ReceiptDeadLetter> letters = deadLetterRepository.findForReprocessing(
+                tapeProperties.getDeadLetterMaxAttempts(),
+                runStartedAt,
+                PageRequest.of(0, tapeProperties.getDeadLetterBatchSize()));
+
+        if (letters.isEmpty()) {
+            return new int[]{0, 0};
+        }
+
+        Map<GetReceiptsTapeResponse.Receipt, ReceiptDeadLetter> lettersByReceipt = new IdentityHashMap<>();
+        for (ReceiptDeadLetter letter : letters) {
+            lettersByReceipt.put(toTapeReceipt(letter), letter);
+        }
+
+        List<ReceiptFailure> failures = receiptService.reprocessReceipts(List.copyOf(lettersByReceipt.keySet()));
+
+        LocalDateTime now = LocalDateTime.now();
+        for (ReceiptFailure failure : failures) {
+            ReceiptDeadLetter letter = lettersByReceipt.remove(failure.receipt());
+            if (letter == null) {
+                continue;
+            }
+            letter.setAttempts(letter.getAttempts() + 1);
+            letter.setLastAttemptAt(now);
+            letter.setStage(failure.stage().name());
+            letter.setErrorClass(failure.error().getClass().getName());
+            letter.setErrorMessage(failure.error().getMessage());
+        }
+
+        // Остальные записи обработаны (или оказались дубликатами)
+        deadLetterRepository.deleteAll(lettersByReceipt.values());
+
+        return new int[]{lettersByReceipt.size(), failures.size()};
+    }
+
+    private GetReceiptsTapeResponse.Receipt toTapeReceipt(ReceiptDeadLetter letter) {
+        GetReceiptsTapeResponse.Receipt receipt = new GetReceiptsTapeResponse.Receipt();
+        receipt.setUserIdentifier(letter.getUserIdentifier());
+        receipt.setPhone(letter.getPhone());
+        receipt.setEmail(letter.getEmail());
+        receipt.setReceiveDate(letter.getReceiveDate());
+        receipt.setSourceCode(letter.getSourceCode());
+        receipt.setJson(letter.getRawJson());
+        return receipt;
+    }
+}
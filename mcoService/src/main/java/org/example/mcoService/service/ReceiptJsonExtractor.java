@@ -0,0 +1,87 @@
+package org.example.mcoService.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.mcoService.dto.receipt.ReceiptFields;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Потоковое извлечение полей чека из JSON ленты МЧО.
+ * Читает байты за один проход и пропускает вложенные структуры (позиции чека),
+ * не строя JsonNode и промежуточную строку.
+ */
+@Component
+public class ReceiptJsonExtractor {
+
+    private final JsonFactory jsonFactory;
+
+    public ReceiptJsonExtractor(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public ReceiptFields extract(byte[] json) throws IOException {
+        Long fiscalSign = null;
+        Long fiscalDocumentNumber = null;
+        String fiscalDriveNumber = null;
+        Long dateTime = null;
+        Long totalSum = null;
+        Integer operationType = null;
+        String userInn = null;
+        String retailPlace = null;
+
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("JSON чека должен быть объектом");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+
+                switch (field) {
+                    case "fiscalSign" -> fiscalSign = parser.getValueAsLong();
+                    case "fiscalDocumentNumber" -> fiscalDocumentNumber = parser.getValueAsLong();
+                    case "fiscalDriveNumber" -> fiscalDriveNumber = parser.getValueAsString();
+                    case "dateTime" -> dateTime = parser.getValueAsLong();
+                    case "totalSum" -> totalSum = parser.getValueAsLong();
+                    case "operationType" -> operationType = parser.getValueAsInt();
+                    case "userInn" -> userInn = parser.getValueAsString();
+                    case "retailPlace" -> retailPlace = parser.getValueAsString();
+                    default -> {
+                        // остальные поля не нужны для сохранения
+                    }
+                }
+            }
+        }
+
+        return new ReceiptFields(
+                required(fiscalSign, "fiscalSign"),
+                required(fiscalDocumentNumber, "fiscalDocumentNumber"),
+                required(fiscalDriveNumber, "fiscalDriveNumber"),
+                required(dateTime, "dateTime"),
+                required(totalSum, "totalSum"),
+                operationType,
+                userInn,
+                retailPlace
+        );
+    }
+
+    private static <T> T required(T value, String field) throws IOException {
+        if (value == null) {
+            throw new IOException("В JSON чека отсутствует поле " + field);
+        }
+        return value;
+    }
+}
@@ -2,30 +2,44 @@ package org.example.mcoService.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ReceiptMarkerService {
 
-    private final RedisTemplate<String, String> redisTemplate;
+    private final TapeCheckpointService checkpointService;
 
     private static final String MARKER_KEY_PREFIX = "receipt:marker:";
+    private static final String TAPE_MARKER_KEY = "receipt:marker:partner-tape";
 
     public void saveMarker(String phoneNumber, String marker) {
-        String key = MARKER_KEY_PREFIX + phoneNumber;
-        redisTemplate.opsForValue().set(key, marker, Duration.ofDays(7));
+        checkpointService.saveMarker(MARKER_KEY_PREFIX + phoneNumber, marker);
         log.debug("Сохранен маркер для {}: {}", phoneNumber, marker);
     }
 
     public String getMarker(String phoneNumber) {
-        String key = MARKER_KEY_PREFIX + phoneNumber;
-        String marker = redisTemplate.opsForValue().get(key);
+        String marker = checkpointService.getMarker(MARKER_KEY_PREFIX + phoneNumber, "S_FROM_END");
         log.debug("Получен маркер для {}: {}", phoneNumber, marker);
-        return marker != null ? marker : "S_FROM_END";
+        return marker;
+    }
+
+    /**
+     * Сохранить маркер общей ленты чеков партнера (один курсор на всех пользователей).
+     * Вызывается после записи всех чеков порции.
+     */
+    public void saveTapeMarker(String marker) {
+        checkpointService.saveMarker(TAPE_MARKER_KEY, marker);
+        log.debug("Сохранен маркер ленты чеков партнера: {}", marker);
+    }
+
+    /**
+     * Получить маркер общей ленты чеков партнера
+     */
+    public String getTapeMarker() {
+        String marker = checkpointService.getMarker(TAPE_MARKER_KEY, "S_FROM_END");
+        log.debug("Получен маркер ленты чеков партнера: {}", marker);
+        return marker;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+package org.example.mcoService.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.config.McoProperties;
+import org.example.mcoService.repository.ReceiptJdbcRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Помесячное секционирование таблицы receipts по receipt_date_time.
+ * Включается mco.partitioning.enabled. Hibernate создает receipts обычной таблицей,
+ * поэтому при первом старте с флагом она переводится в секционированную одной транзакцией
+ * (данные переносятся в секции). Дальше ежедневно создаются секции на futureMonths вперед,
+ * а секции старше retentionMonths удаляются целиком вместо построчного DELETE.
+ * Чеки с датой вне готовых секций попадают в receipts_default.
+ * Перевод выполняется до запуска планировщиков и слушателей (afterSingletonsInstantiated),
+ * и если он не удался, приложение не стартует: иначе вставки шли бы в таблицу
+ * с другим уникальным ключом, чем ожидает ReceiptJdbcRepository.
+ */
+@Slf4j
+@Service
+public class ReceiptPartitionManager implements SmartInitializingSingleton {
+
+    private static final String TABLE = "receipts";
+    private static final String LEGACY_TABLE = "receipts_unpartitioned";
+    private static final String DEFAULT_PARTITION = "receipts_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile("receipts_p(\\d{6})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReceiptJdbcRepository receiptJdbcRepository;
+    private final McoProperties.Partitioning partitioning;
+
+    public ReceiptPartitionManager(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   ReceiptJdbcRepository receiptJdbcRepository,
+                                   McoProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.receiptJdbcRepository = receiptJdbcRepository;
+        this.partitioning = properties.getPartitioning();
+    }
+
+    /**
+     * Перевести receipts в секционированную таблицу, если это еще не сделано,
+     * и настроить вставку чеков под фактический вид таблицы.
+     * Исключение прерывает старт приложения.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (partitioning.isEnabled() && !isPartitioned()) {
+            convertToPartitioned();
+        }
+        // Таблица могла остаться секционированной и после выключения флага
+        boolean partitioned = isPartitioned();
+        receiptJdbcRepository.usePartitionedTable(partitioned);
+        log.info("Таблица receipts {}", partitioned ? "секционирована" : "не секционирована");
+
+        maintainPartitions();
+    }
+
+    /**
+     * Создать будущие секции и удалить устаревшие
+     */
+    @Scheduled(cron = "0 15 4 * * *")
+    public void maintainPartitions() {
+        if (!partitioning.isEnabled() || !isPartitioned()) {
+            return;
+        }
+
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= partitioning.getFutureMonths(); i++) {
+            createPartition(current.plusMonths(i));
+        }
+
+        if (partitioning.getRetentionMonths() > 0) {
+            dropExpiredPartitions(current.minusMonths(partitioning.getRetentionMonths()));
+        }
+    }
+
+    private boolean isPartitioned() {
+        String relkind = jdbcTemplate.queryForObject(
+                "SELECT CAST(c.relkind AS text) FROM pg_class c WHERE c.oid = to_regclass(?)", String.class, TABLE);
+        return "p".equals(relkind);
+    }
+
+    private void convertToPartitioned() {
+        log.info("Перевод таблицы receipts в помесячно секционированную");
+        long startedAt = System.currentTimeMillis();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE receipts IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("ALTER TABLE receipts RENAME TO " + LEGACY_TABLE);
+
+            // Имена индексов общие для схемы: освобождаем их для новой таблицы
+            List<String> legacyIndexes = jdbcTemplate.queryForList(
+                    "SELECT indexname FROM pg_indexes WHERE tablename = ?", String.class, LEGACY_TABLE);
+            for (String index : legacyIndexes) {
+                jdbcTemplate.execute("ALTER INDEX " + quote(index) + " RENAME TO " + quote(legacyName(index)));
+            }
+
+            jdbcTemplate.execute("CREATE TABLE receipts (LIKE " + LEGACY_TABLE + " INCLUDING DEFAULTS) " +
+                    "PARTITION BY RANGE (receipt_date_time)");
+            jdbcTemplate.execute("ALTER TABLE receipts ADD CONSTRAINT receipts_pkey PRIMARY KEY (id, receipt_date_time)");
+            jdbcTemplate.execute("ALTER TABLE receipts ADD CONSTRAINT uk_receipts_fiscal_key_date " +
+                    "UNIQUE (fiscal_sign, fiscal_document_number, fiscal_drive_number, receipt_date_time)");
+            jdbcTemplate.execute("CREATE INDEX idx_receipts_user_date_id ON receipts (user_id, receipt_date_time DESC, id)");
+            jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF receipts DEFAULT");
+
+            LocalDateTime oldest = jdbcTemplate.queryForObject(
+                    "SELECT MIN(receipt_date_time) FROM " + LEGACY_TABLE, LocalDateTime.class);
+            YearMonth current = YearMonth.now();
+            YearMonth month = oldest != null ? YearMonth.from(oldest) : current;
+            if (month.isAfter(current)) {
+                month = current;
+            }
+            for (; !month.isAfter(current.plusMonths(partitioning.getFutureMonths())); month = month.plusMonths(1)) {
+                createPartition(month);
+            }
+
+            int moved = jdbcTemplate.update("INSERT INTO receipts SELECT * FROM " + LEGACY_TABLE);
+            jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+            log.info("Перенесено {} чеков в секции", moved);
+        });
+
+        log.info("Таблица receipts секционирована за {} мс", System.currentTimeMillis() - startedAt);
+    }
+
+    private void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF receipts " +
+                "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    /**
+     * Удалить секции, целиком лежащие до {@code keepFrom}.
+     * Сводка пользователей уменьшается в той же транзакции, что и удаление секции.
+     */
+    private void dropExpiredPartitions(YearMonth keepFrom) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = to_regclass(?)", String.class, TABLE);
+
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.parse(matcher.group(1), PARTITION_SUFFIX);
+            if (!month.isBefore(keepFrom)) {
+                continue;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                receiptJdbcRepository.subtractPartitionFromStats(partition);
+                jdbcTemplate.execute("ALTER TABLE receipts DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                receiptJdbcRepository.refreshStatsAfterPartitionDrop(month.plusMonths(1).atDay(1).atStartOfDay());
+            });
+            log.info("Удалена секция {} с чеками за {} (срок хранения {} мес.)",
+                    partition, month, partitioning.getRetentionMonths());
+        }
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "receipts_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    private static String legacyName(String index) {
+        String suffix = "_old";
+        String base = index.length() + suffix.length() > MAX_IDENTIFIER_LENGTH
+                ? index.substring(0, MAX_IDENTIFIER_LENGTH - suffix.length())
+                : index;
+        return base + suffix;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.mcoService.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Метрики конвейера загрузки чеков: где тратится время - в ФНС, в разборе или в БД.
+ */
+@Component
+public class ReceiptPipelineMetrics {
+
+    private final Timer tapeSendTimer;
+    private final Timer tapeGetTimer;
+    private final Counter parsedCounter;
+    private final Counter duplicateCounter;
+    private final Counter insertedCounter;
+    private final Counter failedCounter;
+    private final Timer ingestLagTimer;
+    private final Timer syncRunTimer;
+    private final AtomicLong remainingPolls = new AtomicLong();
+
+    public ReceiptPipelineMetrics(MeterRegistry registry) {
+        this.tapeSendTimer = tapeFetchTimer(registry, "send");
+        this.tapeGetTimer = tapeFetchTimer(registry, "get");
+        this.parsedCounter = ingestCounter(registry, "parsed");
+        this.duplicateCounter = ingestCounter(registry, "duplicate");
+        this.insertedCounter = ingestCounter(registry, "inserted");
+        this.failedCounter = ingestCounter(registry, "failed");
+        this.ingestLagTimer = Timer.builder("receipts.ingest.lag")
+                .description("Задержка от ReceiveDate в ФНС до записи чека в БД")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofDays(7))
+                .register(registry);
+        this.syncRunTimer = Timer.builder("receipts.sync.run")
+                .description("Длительность прохода синхронизации ленты чеков")
+                .register(registry);
+        Gauge.builder("mco.tape.remaining.polls", remainingPolls, AtomicLong::get)
+                .description("TotalExpectedRemainingPolls последней прочитанной порции ленты")
+                .register(registry);
+    }
+
+    public Timer.Sample startTapeFetch() {
+        return Timer.start();
+    }
+
+    /** SendMessage запроса порции ленты */
+    public void stopTapeSend(Timer.Sample sample) {
+        sample.stop(tapeSendTimer);
+    }
+
+    /** Опрос GetMessage до готовности порции ленты */
+    public void stopTapeGet(Timer.Sample sample) {
+        sample.stop(tapeGetTimer);
+    }
+
+    public void recordSyncRun(Duration duration) {
+        syncRunTimer.record(duration);
+    }
+
+    public void recordRemainingPolls(Long polls) {
+        remainingPolls.set(polls != null ? polls : 0);
+    }
+
+    public void recordIngest(int parsed, int duplicates, int inserted, int failed) {
+        parsedCounter.increment(parsed);
+        duplicateCounter.increment(duplicates);
+        insertedCounter.increment(inserted);
+        failedCounter.increment(failed);
+    }
+
+    /**
+     * @param receiveDate ReceiveDate чека (UTC)
+     */
+    public void recordIngestLag(LocalDateTime receiveDate) {
+        Duration lag = Duration.between(receiveDate, LocalDateTime.now(ZoneOffset.UTC));
+        if (!lag.isNegative()) {
+            ingestLagTimer.record(lag);
+        }
+    }
+
+    private static Timer tapeFetchTimer(MeterRegistry registry, String phase) {
+        return Timer.builder("mco.tape.fetch")
+                .description("Время получения порции ленты чеков из ФНС")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Counter ingestCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("receipts.ingest")
+                .description("Чеки ленты по результату обработки")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
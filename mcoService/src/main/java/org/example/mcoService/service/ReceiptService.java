@@ -1,29 +1,54 @@
 package org.example.mcoService.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.dto.api.ReceiptCursorPageDto;
 import org.example.mcoService.dto.api.ReceiptDto;
 import org.example.mcoService.dto.api.SaveReceiptsResult;
+import org.example.mcoService.dto.api.UserReceiptsSummaryDto;
+import org.example.mcoService.dto.receipt.FiscalKey;
+import org.example.mcoService.dto.receipt.ReceiptCursor;
+import org.example.mcoService.dto.receipt.ReceiptFailure;
+import org.example.mcoService.dto.receipt.ReceiptFields;
+import org.example.mcoService.dto.receipt.ReceiptListView;
 import org.example.mcoService.dto.response.GetReceiptsTapeResponse;
 import org.example.mcoService.entity.Receipt;
+import org.example.mcoService.entity.UserReceiptStats;
 import org.example.common.entity.User;
+import org.example.mcoService.repository.ReceiptJdbcRepository;
 import org.example.mcoService.repository.ReceiptRepository;
+import org.example.mcoService.repository.UserReceiptStatsRepository;
 import org.example.common.repository.UserRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 @Slf4j
 @Service
@@ -31,49 +56,246 @@ import java.util.UUID;
 public class ReceiptService {
 
     private final ReceiptRepository receiptRepository;
+    private final ReceiptJdbcRepository receiptJdbcRepository;
     private final UserRepository userRepository;
-    private final ObjectMapper objectMapper;
+    private final ReceiptJsonExtractor receiptJsonExtractor;
+    private final ForkJoinPool receiptParsingPool;
+    private final FiscalKeyFilter fiscalKeyFilter;
+    private final UserReceiptStatsRepository userReceiptStatsRepository;
+    private final ReceiptPipelineMetrics pipelineMetrics;
+
+    private static final int DEDUP_QUERY_CHUNK_SIZE = 1000;
+    private static final int PARALLEL_PARSE_THRESHOLD = 64;
 
     @Transactional
     public SaveReceiptsResult saveReceipts(List<GetReceiptsTapeResponse.Receipt> receiptsFromMco) {
+        return saveReceiptsGrouped(receiptsFromMco, GetReceiptsTapeResponse.Receipt::getUserIdentifier)
+                .values().stream()
+                .reduce(SaveReceiptsResult.empty(), SaveReceiptsResult::plus);
+    }
+
+    /**
+     * Сохранение порции чеков с группировкой результата.
+     * Ключ группы вычисляет {@code groupKey}; чеки, для которых ключ равен null,
+     * сохраняются, но в результат не попадают.
+     *
+     * @param receiptsFromMco чеки из ленты МЧО
+     * @param groupKey        функция группировки (например, телефон подключенного пользователя)
+     * @return результат сохранения по каждой группе
+     */
+    @Transactional
+    public Map<String, SaveReceiptsResult> saveReceiptsGrouped(List<GetReceiptsTapeResponse.Receipt> receiptsFromMco,
+                                                               Function<GetReceiptsTapeResponse.Receipt, String> groupKey) {
+        return saveReceiptsGrouped(receiptsFromMco, groupKey, new UserIdCache());
+    }
+
+    /**
+     * То же, что {@link #saveReceiptsGrouped(List, Function)}, но с кэшем пользователей,
+     * общим для всех порций одного прохода синхронизации.
+     */
+    @Transactional
+    public Map<String, SaveReceiptsResult> saveReceiptsGrouped(List<GetReceiptsTapeResponse.Receipt> receiptsFromMco,
+                                                               Function<GetReceiptsTapeResponse.Receipt, String> groupKey,
+                                                               UserIdCache userIdCache) {
+        List<ReceiptFailure> failures = new ArrayList<>();
+        Map<String, SaveReceiptsResult> results = ingest(receiptsFromMco, groupKey, userIdCache, failures);
+        recordDeadLetters(failures);
+        return results;
+    }
+
+    /**
+     * Повторная обработка чеков из receipt_dead_letters.
+     * Ошибки не записываются заново, а возвращаются вызывающему.
+     *
+     * @return чеки, которые снова не удалось обработать
+     */
+    @Transactional
+    public List<ReceiptFailure> reprocessReceipts(List<GetReceiptsTapeResponse.Receipt> receiptsFromMco) {
+        List<ReceiptFailure> failures = new ArrayList<>();
+        ingest(receiptsFromMco, GetReceiptsTapeResponse.Receipt::getUserIdentifier, new UserIdCache(), failures);
+        return failures;
+    }
+
+    private Map<String, SaveReceiptsResult> ingest(List<GetReceiptsTapeResponse.Receipt> receiptsFromMco,
+                                                   Function<GetReceiptsTapeResponse.Receipt, String> groupKey,
+                                                   UserIdCache userIdCache,
+                                                   List<ReceiptFailure> failures) {
+        Map<String, SaveReceiptsResult> results = new HashMap<>();
+        // Пополняется из потоков пула разбора
+        List<ReceiptFailure> stageFailures = Collections.synchronizedList(new ArrayList<>());
         int savedCount = 0;
         BigDecimal totalSum = BigDecimal.ZERO;
 
-        for (GetReceiptsTapeResponse.Receipt mcoReceipt : receiptsFromMco) {
+        List<ParsedReceipt> parsedReceipts = transformInParallel(receiptsFromMco, mcoReceipt -> {
             try {
-                String jsonString = bytesToString(mcoReceipt.getJson());
-                JsonNode jsonNode = objectMapper.readTree(jsonString);
+                return parseReceipt(mcoReceipt);
+            } catch (Exception e) {
+                log.error("Ошибка разбора чека для пользователя {}: {}",
+                        mcoReceipt.getUserIdentifier(), e.getMessage(), e);
+                stageFailures.add(new ReceiptFailure(mcoReceipt, ReceiptFailure.Stage.PARSE, e));
+                return null;
+            }
+        }).stream().filter(Objects::nonNull).toList();
 
-                Long fiscalSign = jsonNode.get("fiscalSign").asLong();
-                Long fiscalDocumentNumber = jsonNode.get("fiscalDocumentNumber").asLong();
-                String fiscalDriveNumber = jsonNode.get("fiscalDriveNumber").asText();
+        Set<FiscalKey> knownKeys = findExistingFiscalKeys(parsedReceipts);
 
-                if (receiptRepository.existsByFiscalSignAndFiscalDocumentNumberAndFiscalDriveNumber(
-                        fiscalSign, fiscalDocumentNumber, fiscalDriveNumber)) {
-                    log.debug("Чек уже существует: fiscalSign={}, fiscalDocumentNumber={}, fiscalDriveNumber={}",
-                            fiscalSign, fiscalDocumentNumber, fiscalDriveNumber);
-                    continue;
-                }
+        List<ParsedReceipt> unseenReceipts = new ArrayList<>();
+        for (ParsedReceipt parsed : parsedReceipts) {
+            // Ключ добавляется в набор, чтобы отсечь и повторы внутри одной порции
+            if (knownKeys.add(parsed.fiscalKey())) {
+                unseenReceipts.add(parsed);
+            } else {
+                log.debug("Чек уже существует: {}", parsed.fiscalKey());
+            }
+        }
 
-                User user = findOrCreateUser(mcoReceipt.getUserIdentifier(), mcoReceipt.getEmail());
+        Map<String, UUID> userIds = resolveUserIds(unseenReceipts, userIdCache);
 
-                Receipt receipt = buildReceiptEntity(mcoReceipt, jsonNode, jsonString, user.getId());
+        // Сущности строятся параллельно, владелец проставляется уже по порядку
+        List<Receipt> builtReceipts = transformInParallel(unseenReceipts, parsed -> {
+            try {
+                return buildReceiptEntity(parsed.mcoReceipt(), parsed.fields());
+            } catch (Exception e) {
+                log.error("Ошибка подготовки чека для пользователя {}: {}",
+                        parsed.mcoReceipt().getUserIdentifier(), e.getMessage(), e);
+                stageFailures.add(new ReceiptFailure(parsed.mcoReceipt(), ReceiptFailure.Stage.BUILD, e));
+                return null;
+            }
+        });
 
-                receiptRepository.save(receipt);
-                savedCount++;
-                totalSum = totalSum.add(receipt.getTotalSum());
+        Map<FiscalKey, Receipt> newReceipts = new LinkedHashMap<>();
+        Map<FiscalKey, String> groupKeys = new HashMap<>();
+        for (int i = 0; i < unseenReceipts.size(); i++) {
+            ParsedReceipt parsed = unseenReceipts.get(i);
+            Receipt receipt = builtReceipts.get(i);
+            GetReceiptsTapeResponse.Receipt mcoReceipt = parsed.mcoReceipt();
+            if (receipt == null) {
+                continue;
+            }
+            try {
+                UUID userId = userIds.get(mcoReceipt.getUserIdentifier());
+                if (userId == null) {
+                    log.warn("Не удалось определить пользователя для чека {}", parsed.fiscalKey());
+                    stageFailures.add(new ReceiptFailure(mcoReceipt, ReceiptFailure.Stage.USER,
+                            new IllegalStateException("Пользователь не определен: " + mcoReceipt.getUserIdentifier())));
+                    continue;
+                }
 
-                log.info("Сохранен чек: fiscalSign={}, user={}, sum={}",
-                        fiscalSign, user.getPhoneNumber(), receipt.getTotalSum());
+                receipt.setUserId(userId);
+                newReceipts.put(parsed.fiscalKey(), receipt);
+
+                String key = groupKey.apply(mcoReceipt);
+                if (key != null) {
+                    groupKeys.put(parsed.fiscalKey(), key);
+                }
 
             } catch (Exception e) {
-                log.error("Ошибка сохранения чека для пользователя {}: {}",
+                log.error("Ошибка подготовки чека для пользователя {}: {}",
                         mcoReceipt.getUserIdentifier(), e.getMessage(), e);
+                stageFailures.add(new ReceiptFailure(mcoReceipt, ReceiptFailure.Stage.BUILD, e));
             }
         }
 
-        log.info("Сохранено {} новых чеков из {} на сумму {}", savedCount, receiptsFromMco.size(), totalSum);
-        return new SaveReceiptsResult(savedCount, totalSum);
+        // ON CONFLICT DO NOTHING: чек, вставленный параллельно другой репликой, просто не вернется
+        List<FiscalKey> insertedKeys = receiptJdbcRepository.insertIgnoringDuplicates(new ArrayList<>(newReceipts.values()));
+        fiscalKeyFilter.addAll(insertedKeys);
+        // Дубликаты: найденные при дедупликации и отсеченные ON CONFLICT
+        pipelineMetrics.recordIngest(parsedReceipts.size(),
+                parsedReceipts.size() - unseenReceipts.size() + newReceipts.size() - insertedKeys.size(),
+                insertedKeys.size(),
+                stageFailures.size());
+
+        for (FiscalKey fiscalKey : insertedKeys) {
+            Receipt receipt = newReceipts.get(fiscalKey);
+            savedCount++;
+            totalSum = totalSum.add(receipt.getTotalSum());
+            pipelineMetrics.recordIngestLag(receipt.getReceiveDate());
+
+            String key = groupKeys.get(fiscalKey);
+            if (key != null) {
+                results.merge(key, new SaveReceiptsResult(1, receipt.getTotalSum()), SaveReceiptsResult::plus);
+            }
+
+            log.info("Сохранен чек: fiscalSign={}, user={}, sum={}",
+                    receipt.getFiscalSign(), receipt.getUserIdentifier(), receipt.getTotalSum());
+        }
+
+        failures.addAll(stageFailures);
+        log.info("Сохранено {} новых чеков из {} на сумму {}, с ошибками: {}",
+                savedCount, receiptsFromMco.size(), totalSum, stageFailures.size());
+        return results;
+    }
+
+    /**
+     * Чек, который не удалось обработать, не теряется при сдвиге маркера ленты:
+     * он пишется в receipt_dead_letters в той же транзакции.
+     * Повторно прочитанный чек второй записи не создает.
+     */
+    private void recordDeadLetters(List<ReceiptFailure> failures) {
+        if (failures.isEmpty()) {
+            return;
+        }
+
+        int recorded = receiptJdbcRepository.insertDeadLetters(failures);
+        log.warn("В receipt_dead_letters записано {} чеков с ошибками (уже были записаны: {})",
+                recorded, failures.size() - recorded);
+    }
+
+    /**
+     * Один запрос на пачку ФП вместо проверки существования каждого чека.
+     * В БД проверяются только ключи, которые фильтр не отсек как точно новые.
+     */
+    private Set<FiscalKey> findExistingFiscalKeys(List<ParsedReceipt> parsedReceipts) {
+        List<ParsedReceipt> candidates = parsedReceipts.stream()
+                .filter(parsed -> fiscalKeyFilter.mightContain(parsed.fiscalKey()))
+                .toList();
+
+        Set<FiscalKey> existing = new HashSet<>();
+        for (int from = 0; from < candidates.size(); from += DEDUP_QUERY_CHUNK_SIZE) {
+            List<ParsedReceipt> chunk = candidates.subList(from, Math.min(from + DEDUP_QUERY_CHUNK_SIZE, candidates.size()));
+            List<Long> fiscalSigns = chunk.stream()
+                    .map(parsed -> parsed.fiscalKey().fiscalSign())
+                    .distinct()
+                    .toList();
+            LocalDateTime minDateTime = chunk.stream().map(ParsedReceipt::receiptDateTime)
+                    .min(LocalDateTime::compareTo).orElseThrow();
+            LocalDateTime maxDateTime = chunk.stream().map(ParsedReceipt::receiptDateTime)
+                    .max(LocalDateTime::compareTo).orElseThrow();
+            existing.addAll(receiptRepository.findFiscalKeysByFiscalSignIn(fiscalSigns, minDateTime, maxDateTime));
+        }
+
+        log.debug("Дедупликация: {} из {} чеков уже сохранены, в БД проверено {} чеков",
+                existing.size(), parsedReceipts.size(), candidates.size());
+        return existing;
+    }
+
+    /**
+     * CPU-часть обработки порции на пуле разбора с сохранением порядка элементов.
+     * Маленькие порции обрабатываются в текущем потоке.
+     */
+    private <T, R> List<R> transformInParallel(List<T> items, Function<T, R> transform) {
+        if (items.size() < PARALLEL_PARSE_THRESHOLD) {
+            return items.stream().map(transform).toList();
+        }
+        return receiptParsingPool.submit(() -> items.parallelStream().map(transform).toList()).join();
+    }
+
+    private ParsedReceipt parseReceipt(GetReceiptsTapeResponse.Receipt mcoReceipt) throws IOException {
+        ReceiptFields fields = receiptJsonExtractor.extract(mcoReceipt.getJson());
+        return new ParsedReceipt(mcoReceipt, fields, fields.fiscalKey());
+    }
+
+    private record ParsedReceipt(GetReceiptsTapeResponse.Receipt mcoReceipt,
+                                 ReceiptFields fields,
+                                 FiscalKey fiscalKey) {
+
+        LocalDateTime receiptDateTime() {
+            return toReceiptDateTime(fields);
+        }
+    }
+
+    private static LocalDateTime toReceiptDateTime(ReceiptFields fields) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(fields.dateTime()), ZoneId.systemDefault());
     }
 
     @Transactional
@@ -92,83 +314,295 @@ public class ReceiptService {
         return saveReceipts(userReceipts);
     }
 
-    private User findOrCreateUser(String phoneNumber, String email) {
-        return userRepository.findByPhoneNumberNormalized(phoneNumber)
-                .orElseGet(() -> {
-                    log.info("Создаем нового пользователя: {}", phoneNumber);
-                    User newUser = User.builder()
-                            .phoneNumber(phoneNumber)
-                            .email(email)
-                            .isActive(true)
-                            .build();
-                    return userRepository.save(newUser);
-                });
-    }
-
-    private Receipt buildReceiptEntity(GetReceiptsTapeResponse.Receipt mcoReceipt,
-                                       JsonNode jsonNode,
-                                       String jsonString,
-                                       UUID userId) {
-        long dateTimestamp = jsonNode.get("dateTime").asLong();
-        LocalDateTime receiptDateTime = LocalDateTime.ofInstant(
-                Instant.ofEpochSecond(dateTimestamp),
-                ZoneId.systemDefault()
-        );
+    /**
+     * Найти или создать пользователей для всех идентификаторов порции одним запросом.
+     * Уже известные по кэшу прохода идентификаторы повторно не ищутся.
+     *
+     * @return userId по идентификатору для всех владельцев порции; кэш может вытеснить запись
+     * раньше, чем она понадобится при сборке чеков, поэтому порция работает с этой картой
+     */
+    private Map<String, UUID> resolveUserIds(List<ParsedReceipt> receipts, UserIdCache userIdCache) {
+        Map<String, UUID> userIds = new HashMap<>();
+        Map<String, String> emailsByIdentifier = new LinkedHashMap<>();
+        for (ParsedReceipt parsed : receipts) {
+            String identifier = parsed.mcoReceipt().getUserIdentifier();
+            if (identifier == null || userIds.containsKey(identifier)) {
+                continue;
+            }
+            UUID cached = userIdCache.get(identifier);
+            if (cached != null) {
+                userIds.put(identifier, cached);
+            } else {
+                emailsByIdentifier.putIfAbsent(identifier, parsed.mcoReceipt().getEmail());
+            }
+        }
+
+        if (emailsByIdentifier.isEmpty()) {
+            return userIds;
+        }
+
+        // Тот же поиск, что в findByPhoneNumberNormalized: как есть и без "+"
+        Set<String> candidates = new HashSet<>();
+        for (String identifier : emailsByIdentifier.keySet()) {
+            candidates.add(identifier);
+            candidates.add(identifier.replace("+", ""));
+        }
+
+        Map<String, UUID> idsByPhone = new HashMap<>();
+        List<String> candidateList = new ArrayList<>(candidates);
+        for (int from = 0; from < candidateList.size(); from += DEDUP_QUERY_CHUNK_SIZE) {
+            List<String> chunk = candidateList.subList(from, Math.min(from + DEDUP_QUERY_CHUNK_SIZE, candidateList.size()));
+            userRepository.findIdsByPhoneNumberIn(chunk)
+                    .forEach(view -> idsByPhone.put(view.getPhoneNumber(), view.getId()));
+        }
+
+        Map<String, UUID> resolved = new HashMap<>();
+        // "+7..." и "7..." - один пользователь: ненайденные варианты группируются по номеру без "+"
+        Map<String, List<String>> unresolvedByPhone = new LinkedHashMap<>();
+        emailsByIdentifier.forEach((identifier, email) -> {
+            UUID userId = idsByPhone.getOrDefault(identifier, idsByPhone.get(identifier.replace("+", "")));
+            if (userId != null) {
+                resolved.put(identifier, userId);
+            } else {
+                unresolvedByPhone.computeIfAbsent(identifier.replace("+", ""), phone -> new ArrayList<>())
+                        .add(identifier);
+            }
+        });
+
+        List<User> newUsers = new ArrayList<>();
+        for (List<String> variants : unresolvedByPhone.values()) {
+            String identifier = variants.get(0);
+            log.info("Создаем нового пользователя: {}", identifier);
+            newUsers.add(User.builder()
+                    .phoneNumber(identifier)
+                    .email(variants.stream()
+                            .map(emailsByIdentifier::get)
+                            .filter(Objects::nonNull)
+                            .findFirst()
+                            .orElse(null))
+                    .isActive(true)
+                    .build());
+        }
+
+        int found = resolved.size();
+        if (!newUsers.isEmpty()) {
+            // flush до пакетной вставки чеков через JDBC в той же транзакции
+            List<User> saved = userRepository.saveAllAndFlush(newUsers);
+            Iterator<List<String>> groups = unresolvedByPhone.values().iterator();
+            for (User user : saved) {
+                UUID userId = user.getId();
+                groups.next().forEach(identifier -> resolved.put(identifier, userId));
+            }
+        }
+
+        userIds.putAll(resolved);
+        cacheAfterCommit(resolved, userIdCache);
+
+        log.debug("Пользователи порции: {} найдено, {} создано", found, newUsers.size());
+        return userIds;
+    }
+
+    /**
+     * Кэш прохода общий для нескольких транзакций, поэтому id попадают в него только после фиксации:
+     * пользователи, созданные в откатившейся порции, в БД не существуют.
+     */
+    private static void cacheAfterCommit(Map<String, UUID> userIds, UserIdCache userIdCache) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            userIds.forEach(userIdCache::put);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userIds.forEach(userIdCache::put);
+            }
+        });
+    }
+
+    private Receipt buildReceiptEntity(GetReceiptsTapeResponse.Receipt mcoReceipt, ReceiptFields fields) {
+        LocalDateTime receiptDateTime = toReceiptDateTime(fields);
 
         LocalDateTime receiveDate = LocalDateTime.parse(
                 mcoReceipt.getReceiveDate().replace("Z", "")
         );
 
-        BigDecimal totalSum = BigDecimal.valueOf(jsonNode.get("totalSum").asLong())
+        BigDecimal totalSum = BigDecimal.valueOf(fields.totalSum())
                 .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
 
         return Receipt.builder()
-                .userId(userId)
                 .userIdentifier(mcoReceipt.getUserIdentifier())
                 .phone(mcoReceipt.getPhone())
                 .email(mcoReceipt.getEmail())
-                .fiscalSign(jsonNode.get("fiscalSign").asLong())
-                .fiscalDocumentNumber(jsonNode.get("fiscalDocumentNumber").asLong())
-                .fiscalDriveNumber(jsonNode.get("fiscalDriveNumber").asText())
+                .fiscalSign(fields.fiscalSign())
+                .fiscalDocumentNumber(fields.fiscalDocumentNumber())
+                .fiscalDriveNumber(fields.fiscalDriveNumber())
                 .receiptDateTime(receiptDateTime)
                 .receiveDate(receiveDate)
                 .totalSum(totalSum)
                 .sourceCode(mcoReceipt.getSourceCode())
-                .operationType(jsonNode.has("operationType") ? jsonNode.get("operationType").asInt() : null)
-                .userInn(jsonNode.has("userInn") ? jsonNode.get("userInn").asText() : null)
-                .retailPlace(jsonNode.has("retailPlace") ? jsonNode.get("retailPlace").asText() : null)
-                .rawJson(jsonString)
+                .operationType(fields.operationType())
+                .userInn(fields.userInn())
+                .retailPlace(fields.retailPlace())
+                .rawJsonBytes(mcoReceipt.getJson())
                 .build();
     }
 
-    private String bytesToString(byte[] jsonBytes) {
-        return new String(jsonBytes, StandardCharsets.UTF_8);
+    public Page<ReceiptDto> getUserReceiptsByPhone(String phoneNumber, Pageable pageable) {
+        User user = userRepository.findByPhoneNumberNormalized(phoneNumber)
+                .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + phoneNumber));
+
+        Page<ReceiptListView> page = receiptRepository.findListByUserId(user.getId(), pageable);
+
+        return page.map(this::toListDto);
     }
 
-    public Page<ReceiptDto> getUserReceiptsByPhone(String phoneNumber, Pageable pageable) {
+    public UUID getUserIdByPhone(String phoneNumber) {
+        return userRepository.findByPhoneNumberNormalized(phoneNumber)
+                .map(User::getId)
+                .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + phoneNumber));
+    }
+
+    /**
+     * Детальная информация о чеке пользователя, включая полный JSON
+     */
+    public ReceiptDto getUserReceipt(String phoneNumber, UUID receiptId) {
         User user = userRepository.findByPhoneNumberNormalized(phoneNumber)
                 .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + phoneNumber));
 
-        Page<Receipt> page = receiptRepository.findByUserIdOrderByReceiptDateTimeDesc(user.getId(), pageable);
+        return receiptRepository.findByIdAndUserId(receiptId, user.getId())
+                .map(this::toDto)
+                .orElseThrow(() -> new NoSuchElementException("Чек не найден: " + receiptId));
+    }
+
+    /**
+     * Keyset-пагинация чеков пользователя без COUNT(*) и без пропуска строк на глубоких страницах.
+     *
+     * @param cursor курсор из предыдущей страницы (null - первая страница)
+     */
+    public ReceiptCursorPageDto getUserReceiptsByCursor(String phoneNumber, String cursor, int size) {
+        User user = userRepository.findByPhoneNumberNormalized(phoneNumber)
+                .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + phoneNumber));
+
+        // Лишняя строка показывает, есть ли следующая страница
+        int limit = size + 1;
+        List<ReceiptListView> receipts;
+        if (cursor == null || cursor.isBlank()) {
+            receipts = receiptRepository.findFirstPageByUserId(user.getId(), limit);
+        } else {
+            ReceiptCursor position = ReceiptCursor.decode(cursor);
+            receipts = receiptRepository.findPageByUserIdAfter(
+                    user.getId(), position.receiptDateTime(), position.id(), limit);
+        }
+
+        boolean hasMore = receipts.size() > size;
+        List<ReceiptListView> page = hasMore ? receipts.subList(0, size) : receipts;
+
+        String nextCursor = null;
+        if (hasMore) {
+            ReceiptListView last = page.get(page.size() - 1);
+            nextCursor = new ReceiptCursor(last.getReceiptDateTime(), last.getId()).encode();
+        }
+
+        return ReceiptCursorPageDto.builder()
+                .receipts(page.stream().map(this::toListDto).toList())
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    public long countUserReceiptsByPhone(String phoneNumber) {
+        User user = userRepository.findByPhoneNumberNormalized(phoneNumber)
+                .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + phoneNumber));
+        return countUserReceipts(user.getId());
+    }
+
+    /**
+     * Дозаполнить сводку user_receipt_stats по чекам, сохраненным до ее появления.
+     * Строки, уже созданные вставкой чеков, не перезаписываются.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillUserReceiptStats() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            int rows = receiptJdbcRepository.backfillStats();
+            log.info("Сводка чеков пользователей дозаполнена: {} строк за {} мс", rows, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("Не удалось дозаполнить сводку чеков пользователей: {}", e.getMessage(), e);
+        }
+    }
 
-        return page.map(this::toDto);
+    /**
+     * Количество чеков пользователя из сводки user_receipt_stats (без COUNT(*) по receipts).
+     * Пока сводка не дозаполнена, у пользователя со старыми чеками строки может не быть - тогда считаем по receipts.
+     */
+    public long countUserReceipts(UUID userId) {
+        return userReceiptStatsRepository.findById(userId)
+                .map(UserReceiptStats::getReceiptCount)
+                .orElseGet(() -> receiptRepository.countByUserId(userId));
+    }
+
+    /**
+     * Сводка по чекам пользователя: одна строка user_receipt_stats, при ее отсутствии - агрегат по receipts
+     */
+    public UserReceiptsSummaryDto getUserReceiptsSummary(UUID userId) {
+        UserReceiptStats stats = userReceiptStatsRepository.findById(userId)
+                .orElseGet(() -> receiptJdbcRepository.aggregateUserStats(userId));
+        return UserReceiptsSummaryDto.builder()
+                .totalCount(stats.getReceiptCount())
+                .totalAmount(stats.getTotalAmount())
+                .averageAmount(stats.getReceiptCount() == 0
+                        ? BigDecimal.ZERO
+                        : stats.getTotalAmount().divide(
+                                BigDecimal.valueOf(stats.getReceiptCount()), 2, RoundingMode.HALF_UP))
+                .oldestReceiptDate(stats.getOldestReceiptDate())
+                .newestReceiptDate(stats.getNewestReceiptDate())
+                .build();
+    }
+
+    /**
+     * Страница чеков пользователя по userId (для внутренних вызовов userService)
+     */
+    public List<ReceiptDto> getUserReceiptsPage(UUID userId, int page, int size) {
+        return receiptRepository.findOffsetPageByUserId(userId, size, (long) page * size).stream()
+                .map(this::toListDto)
+                .toList();
     }
 
     private ReceiptDto toDto(Receipt receipt) {
-        return new ReceiptDto(
-                receipt.getPhone(),
-                receipt.getEmail(),
-                receipt.getFiscalSign(),
-                receipt.getFiscalDocumentNumber(),
-                receipt.getFiscalDriveNumber(),
-                receipt.getReceiptDateTime(),
-                receipt.getReceiveDate(),
-                receipt.getTotalSum(),
-                receipt.getSourceCode(),
-                receipt.getOperationType(),
-                receipt.getUserInn(),
-                receipt.getRetailPlace(),
-                receipt.getRawJson()
-        );
+        return ReceiptDto.builder()
+                .id(receipt.getId())
+                .phone(receipt.getPhone())
+                .email(receipt.getEmail())
+                .fiscalSign(receipt.getFiscalSign())
+                .fiscalDocumentNumber(receipt.getFiscalDocumentNumber())
+                .fiscalDriveNumber(receipt.getFiscalDriveNumber())
+                .receiptDateTime(receipt.getReceiptDateTime())
+                .receiveDate(receipt.getReceiveDate())
+                .totalSum(receipt.getTotalSum())
+                .sourceCode(receipt.getSourceCode())
+                .operationType(receipt.getOperationType())
+                .userInn(receipt.getUserInn())
+                .retailPlace(receipt.getRetailPlace())
+                .rawJson(receipt.getRawJson())
+                .build();
+    }
+
+    private ReceiptDto toListDto(ReceiptListView receipt) {
+        return ReceiptDto.builder()
+                .id(receipt.getId())
+                .phone(receipt.getPhone())
+                .email(receipt.getEmail())
+                .fiscalSign(receipt.getFiscalSign())
+                .fiscalDocumentNumber(receipt.getFiscalDocumentNumber())
+                .fiscalDriveNumber(receipt.getFiscalDriveNumber())
+                .receiptDateTime(receipt.getReceiptDateTime())
+                .receiveDate(receipt.getReceiveDate())
+                .totalSum(receipt.getTotalSum())
+                .sourceCode(receipt.getSourceCode())
+                .operationType(receipt.getOperationType())
+                .userInn(receipt.getUserInn())
+                .retailPlace(receipt.getRetailPlace())
+                .build();
     }
-}
\ No newline at end of file
+}
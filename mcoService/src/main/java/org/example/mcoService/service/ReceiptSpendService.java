@@ -0,0 +1,72 @@
+package org.example.mcoService.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.common.entity.User;
+import org.example.common.repository.UserRepository;
+import org.example.mcoService.dto.api.SpendPeriodDto;
+import org.example.mcoService.enums.SpendPeriod;
+import org.example.mcoService.repository.ReceiptRollupJdbcRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Траты пользователей по неделям и месяцам из дневного среза receipt_daily_rollup
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReceiptSpendService {
+
+    private final ReceiptRollupJdbcRepository rollupRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Дозаполнить срез по чекам, сохраненным до его появления.
+     * Строки, уже созданные вставкой чеков, не перезаписываются.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillRollup() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            int rows = rollupRepository.backfill();
+            log.info("Дневной срез трат дозаполнен: {} строк за {} мс", rows, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            log.error("Не удалось дозаполнить дневной срез трат: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Траты пользователя по периодам
+     *
+     * @param from первый день диапазона (включительно)
+     * @param to   последний день диапазона (включительно)
+     */
+    public List<SpendPeriodDto> getUserSpend(String phoneNumber, SpendPeriod period, LocalDate from, LocalDate to) {
+        User user = userRepository.findByPhoneNumberNormalized(phoneNumber)
+                .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + phoneNumber));
+
+        return rollupRepository.findSpendByPeriod(user.getId(), period, from, to.plusDays(1)).stream()
+                .map(spend -> SpendPeriodDto.builder()
+                        .periodStart(spend.periodStart())
+                        .receiptCount(spend.receiptCount())
+                        .totalAmount(spend.totalAmount())
+                        .averageAmount(average(spend.totalAmount(), spend.receiptCount()))
+                        .build())
+                .toList();
+    }
+
+    static BigDecimal average(BigDecimal totalAmount, long count) {
+        return count == 0
+                ? BigDecimal.ZERO
+                : totalAmount.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+    }
+}
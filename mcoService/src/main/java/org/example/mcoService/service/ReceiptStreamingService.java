@@ -0,0 +1,165 @@
+package org.example.mcoService.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.example.mcoService.dto.receipt.ReceiptCursor;
+import org.example.mcoService.dto.receipt.ReceiptField;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Выдача чеков с выборочными полями ({@code fields=}).
+ * В SQL выбираются только запрошенные колонки, а JSON пишется потоково
+ * генератором Jackson прямо в ответ, без промежуточных DTO и обертки ApiResponse в памяти.
+ * Формат ответа совпадает с обычными эндпоинтами.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReceiptStreamingService {
+
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    /** Колонки, нужные для сортировки и курсора, выбираются всегда */
+    private static final List<ReceiptField> ORDER_FIELDS = List.of(ReceiptField.RECEIPT_DATE_TIME, ReceiptField.ID);
+
+    /**
+     * Страница по номеру (формат data как у Page: content/number/size, без подсчета общего количества)
+     */
+    @Transactional(readOnly = true)
+    public void writePage(UUID userId, Set<ReceiptField> fields, int page, int size, OutputStream out) throws IOException {
+        List<ReceiptField> columns = selectColumns(fields);
+        TypedQuery<Object[]> query = createQuery(userId, columns, null)
+                .setFirstResult(page * size)
+                .setMaxResults(size);
+
+        try (JsonGenerator generator = createGenerator(out);
+             Stream<Object[]> rows = query.getResultStream()) {
+            writeEnvelopeStart(generator);
+            generator.writeArrayFieldStart("content");
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                writeRow(generator, fields, columns, it.next());
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("number", page);
+            generator.writeNumberField("size", size);
+            writeEnvelopeEnd(generator);
+        }
+    }
+
+    /**
+     * Страница по курсору (формат data как у ReceiptCursorPageDto)
+     */
+    @Transactional(readOnly = true)
+    public void writeCursorPage(UUID userId, Set<ReceiptField> fields, ReceiptCursor cursor, int size,
+                                OutputStream out) throws IOException {
+        List<ReceiptField> columns = selectColumns(fields);
+        // Лишняя строка показывает, есть ли следующая страница
+        TypedQuery<Object[]> query = createQuery(userId, columns, cursor).setMaxResults(size + 1);
+
+        try (JsonGenerator generator = createGenerator(out);
+             Stream<Object[]> rows = query.getResultStream()) {
+            writeEnvelopeStart(generator);
+            generator.writeArrayFieldStart("receipts");
+
+            int written = 0;
+            boolean hasMore = false;
+            Object[] last = null;
+            for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                Object[] row = it.next();
+                if (written == size) {
+                    hasMore = true;
+                    break;
+                }
+                writeRow(generator, fields, columns, row);
+                last = row;
+                written++;
+            }
+            generator.writeEndArray();
+
+            if (hasMore) {
+                ReceiptCursor next = new ReceiptCursor(
+                        (LocalDateTime) last[columns.indexOf(ReceiptField.RECEIPT_DATE_TIME)],
+                        (UUID) last[columns.indexOf(ReceiptField.ID)]);
+                generator.writeStringField("nextCursor", next.encode());
+            } else {
+                generator.writeNullField("nextCursor");
+            }
+            generator.writeBooleanField("hasMore", hasMore);
+            writeEnvelopeEnd(generator);
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream out) throws IOException {
+        // Поток ответа закрывает контейнер, а не генератор
+        return objectMapper.getFactory().createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private List<ReceiptField> selectColumns(Set<ReceiptField> fields) {
+        EnumSet<ReceiptField> columns = EnumSet.copyOf(fields);
+        columns.addAll(ORDER_FIELDS);
+        return new ArrayList<>(columns);
+    }
+
+    private TypedQuery<Object[]> createQuery(UUID userId, List<ReceiptField> columns, ReceiptCursor cursor) {
+        StringBuilder jpql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                jpql.append(", ");
+            }
+            jpql.append("r.").append(columns.get(i).property());
+        }
+        jpql.append(" FROM Receipt r WHERE r.userId = :userId");
+        if (cursor != null) {
+            jpql.append(" AND (r.receiptDateTime < :dateTime OR (r.receiptDateTime = :dateTime AND r.id > :id))");
+        }
+        jpql.append(" ORDER BY r.receiptDateTime DESC, r.id");
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+                .setParameter("userId", userId);
+        if (cursor != null) {
+            query.setParameter("dateTime", cursor.receiptDateTime())
+                    .setParameter("id", cursor.id());
+        }
+        return query;
+    }
+
+    private void writeRow(JsonGenerator generator, Set<ReceiptField> fields, List<ReceiptField> columns,
+                          Object[] row) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < columns.size(); i++) {
+            ReceiptField field = columns.get(i);
+            if (fields.contains(field)) {
+                generator.writeObjectField(field.property(), row[i]);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeEnvelopeStart(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeBooleanField("success", true);
+        generator.writeObjectFieldStart("data");
+    }
+
+    private void writeEnvelopeEnd(JsonGenerator generator) throws IOException {
+        generator.writeEndObject();
+        generator.writeObjectField("timestamp", LocalDateTime.now());
+        generator.writeEndObject();
+    }
+}
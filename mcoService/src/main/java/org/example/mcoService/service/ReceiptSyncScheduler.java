@@ -2,84 +2,50 @@ package org.example.mcoService.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.example.common.entity.UserBindingStatus;
-import org.example.common.repository.UserBindingStatusRepository;
-import org.example.mcoService.dto.api.SaveReceiptsResult;
-import org.example.mcoService.dto.response.GetReceiptsTapeResponse;
-import org.example.mcoService.websocket.BindStatusWebSocketHandler;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.time.Duration;
+import java.time.Instant;
 
+/**
+ * Периодическая синхронизация ленты чеков.
+ * Пауза между проходами и их глубина задаются {@link AdaptiveTapeSchedule}
+ * вместо фиксированного fixedDelay.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class ReceiptSyncScheduler {
-
-    private final McoService mcoService;
-    private final ReceiptService receiptService;
-    private final ReceiptMarkerService markerService;
-    private final UserBindingStatusRepository bindingStatusRepository;
-    private final AutoNotificationService autoNotificationService;
-    private final BindStatusWebSocketHandler webSocketHandler;
+public class ReceiptSyncScheduler implements SchedulingConfigurer {
+
+    private final ReceiptTapeConsumer tapeConsumer;
+    private final AdaptiveTapeSchedule schedule;
+    private final ReceiptPipelineMetrics pipelineMetrics;
+
+    @Override
+    public void configureTasks(@NonNull ScheduledTaskRegistrar registrar) {
+        registrar.addTriggerTask(this::syncReceiptsForAllConnectedUsers, context -> {
+            Instant lastCompletion = context.lastCompletion();
+            Instant base = lastCompletion != null ? lastCompletion : Instant.now();
+            return base.plus(schedule.nextDelay());
+        });
+    }
 
-    @Scheduled(fixedDelay = 300_000)
     public void syncReceiptsForAllConnectedUsers() {
         log.info("Запуск периодической синхронизации чеков");
-
-        List<String> connectedPhones = bindingStatusRepository.findAll().stream()
-                .map(UserBindingStatus::getPhoneNumber)
-                .toList();
-
-        log.info("Найдено {} подключенных пользователей", connectedPhones.size());
-
-        for (String phone : connectedPhones) {
-            try {
-                syncReceiptsForUser(phone);
-            } catch (Exception e) {
-                log.error("Ошибка синхронизации для {}: {}", phone, e.getMessage());
-            }
-        }
-        log.info("Синхронизация завершена");
-    }
-
-    private void syncReceiptsForUser(String phone) {
-        String marker = markerService.getMarker(phone);
-
-        log.debug("Синхронизация чеков для {} с маркером {}", phone, marker);
-
-        GetReceiptsTapeResponse response = mcoService.getReceiptsByMarker(marker);
-
-        if (response.getReceipts() != null && !response.getReceipts().isEmpty()) {
-            List<GetReceiptsTapeResponse.Receipt> userReceipts = response.getReceipts().stream()
-                    .filter(r -> phone.equals(r.getUserIdentifier()) || phone.equals(r.getPhone()))
-                    .toList();
-
-            SaveReceiptsResult result = receiptService.saveReceipts(userReceipts);
-            log.info("Синхронизировано {} новых чеков для {} на сумму {}",
-                    result.count(), phone, result.getTotalSumFormatted());
-
-            // Отправляем уведомление о новых чеках (только если есть новые чеки)
-            if (result.hasNewReceipts()) {
-                // WebSocket уведомление
-                webSocketHandler.sendNewReceiptsNotification(
-                        phone,
-                        result.count(),
-                        result.getTotalSumFormatted()
-                );
-                
-                // Push-уведомление
-                autoNotificationService.sendNewReceiptsNotification(
-                        phone,
-                        result.count(),
-                        result.getTotalSumFormatted()
-                );
-            }
+        long startedAt = System.currentTimeMillis();
+
+        try {
+            ReceiptTapeConsumer.TapeRunResult result = tapeConsumer.consumeTape(schedule.nextMaxPages());
+            schedule.onSuccess(result, startedAt);
+        } catch (Exception e) {
+            schedule.onFailure();
+            log.error("Ошибка синхронизации ленты чеков: {}", e.getMessage(), e);
         }
+        pipelineMetrics.recordSyncRun(Duration.ofMillis(System.currentTimeMillis() - startedAt));
 
-        if (response.getNextMarker() != null) {
-            markerService.saveMarker(phone, response.getNextMarker());
-        }
+        log.info("Синхронизация завершена, следующая через {}", schedule.nextDelay());
     }
-}
\ No newline at end of file
+}
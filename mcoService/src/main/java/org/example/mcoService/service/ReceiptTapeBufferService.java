@@ -0,0 +1,142 @@
+package org.example.mcoService.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.config.McoProperties;
+import org.example.mcoService.dto.api.SaveReceiptsResult;
+import org.example.mcoService.dto.response.GetReceiptsTapeResponse;
+import org.example.mcoService.entity.ReceiptTapeBufferEntry;
+import org.example.mcoService.repository.ReceiptJdbcRepository;
+import org.example.mcoService.repository.ReceiptTapeBufferRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Локальный буфер ленты чеков.
+ * Чеки, у которых при чтении ленты нет подключенного владельца, дописываются сюда,
+ * а при одобрении подключения переносятся в receipts из буфера,
+ * без повторного чтения ленты ФНС с S_FROM_BEGINNING.
+ */
+@Slf4j
+@Service
+public class ReceiptTapeBufferService {
+
+    private final ReceiptTapeBufferRepository bufferRepository;
+    private final ReceiptJdbcRepository receiptJdbcRepository;
+    private final ReceiptService receiptService;
+    private final McoProperties.Tape tapeProperties;
+    private final TransactionTemplate batchTransaction;
+
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    public ReceiptTapeBufferService(ReceiptTapeBufferRepository bufferRepository,
+                                    ReceiptJdbcRepository receiptJdbcRepository,
+                                    ReceiptService receiptService,
+                                    McoProperties properties,
+                                    PlatformTransactionManager transactionManager) {
+        this.bufferRepository = bufferRepository;
+        this.receiptJdbcRepository = receiptJdbcRepository;
+        this.receiptService = receiptService;
+        this.tapeProperties = properties.getTape();
+        // Каждый пакет переноса фиксируется сам по себе, независимо от транзакции вызывающего
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Дописать в буфер чеки без подключенного владельца
+     */
+    public void append(List<GetReceiptsTapeResponse.Receipt> receipts) {
+        receiptJdbcRepository.insertIntoTapeBuffer(receipts);
+    }
+
+    /**
+     * Перенести буферизованные чеки пользователя в receipts.
+     * Буфер читается пакетами по BACKFILL_BATCH_SIZE, каждый пакет сохраняется
+     * и удаляется из буфера в собственной транзакции (REQUIRES_NEW): ошибка пакета
+     * не помечает на откат транзакцию вызывающего, а чеки, дописанные в буфер
+     * во время переноса, попадают в следующие пакеты.
+     * Вызывать после фиксации подключения пользователя.
+     *
+     * @param phone телефон подключенного пользователя
+     * @return результат сохранения перенесенных чеков
+     */
+    public SaveReceiptsResult backfill(String phone) {
+        Set<String> identifiers = Set.of(phone, phone.replace("+", ""));
+        Pageable batch = PageRequest.of(0, BACKFILL_BATCH_SIZE);
+
+        SaveReceiptsResult total = SaveReceiptsResult.empty();
+        int moved = 0;
+        while (true) {
+            BatchResult result = batchTransaction.execute(status -> {
+                List<ReceiptTapeBufferEntry> entries = bufferRepository.findByIdentifiers(identifiers, batch);
+                if (entries.isEmpty()) {
+                    return null;
+                }
+
+                List<GetReceiptsTapeResponse.Receipt> receipts = entries.stream()
+                        .map(this::toTapeReceipt)
+                        .toList();
+
+                SaveReceiptsResult saved = receiptService.saveReceipts(receipts);
+                bufferRepository.deleteByIdIn(entries.stream().map(ReceiptTapeBufferEntry::getId).toList());
+                return new BatchResult(entries.size(), saved);
+            });
+
+            if (result == null) {
+                break;
+            }
+            moved += result.entries();
+            total = total.plus(result.saved());
+        }
+
+        if (moved == 0) {
+            log.debug("В буфере ленты нет чеков для {}", phone);
+        } else {
+            log.info("Из буфера ленты перенесено {} чеков для {}, новых: {}", moved, phone, total.count());
+        }
+        return total;
+    }
+
+    /**
+     * Удаление устаревших записей буфера пакетами
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void cleanupExpired() {
+        LocalDateTime before = LocalDateTime.now().minus(tapeProperties.getBufferRetention());
+
+        long totalDeleted = 0;
+        int batchDeleted;
+        do {
+            batchDeleted = bufferRepository.deleteBatchBufferedBefore(before, CLEANUP_BATCH_SIZE);
+            totalDeleted += batchDeleted;
+        } while (batchDeleted == CLEANUP_BATCH_SIZE);
+
+        if (totalDeleted > 0) {
+            log.info("Из буфера ленты удалено {} устаревших чеков (старше {})", totalDeleted, before);
+        }
+    }
+
+    private record BatchResult(int entries, SaveReceiptsResult saved) {
+    }
+
+    private GetReceiptsTapeResponse.Receipt toTapeReceipt(ReceiptTapeBufferEntry entry) {
+        GetReceiptsTapeResponse.Receipt receipt = new GetReceiptsTapeResponse.Receipt();
+        receipt.setUserIdentifier(entry.getUserIdentifier());
+        receipt.setPhone(entry.getPhone());
+        receipt.setEmail(entry.getEmail());
+        receipt.setReceiveDate(entry.getReceiveDate());
+        receipt.setSourceCode(entry.getSourceCode());
+        receipt.setJson(entry.getRawJson());
+        return receipt;
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.mcoService.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.common.entity.UserBindingStatus;
+import org.example.common.repository.UserBindingStatusRepository;
+import org.example.mcoService.dto.api.SaveReceiptsResult;
+import org.example.mcoService.dto.response.GetReceiptsTapeResponse;
+import org.example.mcoService.websocket.BindStatusWebSocketHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Единый потребитель ленты чеков партнера.
+ * Лента GetReceiptsTape общая для всех подключенных пользователей, поэтому
+ * каждая порция читается ровно один раз по общему маркеру, а чеки
+ * распределяются по пользователям по UserIdentifier/Phone.
+ * Загрузка следующей порции идет параллельно с записью текущей, см. {@link ReceiptTapeReader}.
+ * Чеки еще не подключенных пользователей складываются в {@link ReceiptTapeBufferService}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReceiptTapeConsumer {
+
+    private final ReceiptTapeReader tapeReader;
+    private final ReceiptService receiptService;
+    private final ReceiptTapeBufferService tapeBufferService;
+    private final ReceiptMarkerService markerService;
+    private final UserBindingStatusRepository bindingStatusRepository;
+    private final AutoNotificationService autoNotificationService;
+    private final BindStatusWebSocketHandler webSocketHandler;
+    private final TransactionTemplate transactionTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Итог прохода по ленте.
+     *
+     * @param pages          сколько порций прочитано
+     * @param receipts       сколько чеков получено из ленты
+     * @param remainingPolls TotalExpectedRemainingPolls последней порции
+     * @param hasMore        проход остановлен по лимиту порций
+     * @param newReceipts    новые чеки по телефону подключенного пользователя
+     */
+    public record TapeRunResult(int pages, int receipts, long remainingPolls, boolean hasMore,
+                                Map<String, SaveReceiptsResult> newReceipts) {
+    }
+
+    /**
+     * Прочитать ленту от сохраненного маркера и разослать
+     * уведомления о новых чеках подключенным пользователям.
+     *
+     * @param maxPages сколько порций прочитать не более
+     */
+    public TapeRunResult consumeTape(int maxPages) {
+        Set<String> connectedPhones = loadConnectedPhones();
+
+        log.info("Чтение ленты чеков партнера для {} подключенных пользователей", connectedPhones.size());
+
+        Map<String, SaveReceiptsResult> resultsByPhone = new HashMap<>();
+        UserIdCache userIdCache = new UserIdCache();
+        AtomicInteger receiptsRead = new AtomicInteger();
+        ReceiptTapeReader.ReadResult readResult;
+        try {
+            readResult = tapeReader.read(markerService.getTapeMarker(), maxPages,
+                    new ReceiptTapeReader.PageHandler() {
+                        // Все пачки порции и ее маркер фиксируются одной транзакцией:
+                        // после сбоя посреди порции в БД не остается ничего из нее
+                        private TransactionStatus pageTransaction;
+                        private final Map<String, SaveReceiptsResult> pageResults = new HashMap<>();
+
+                        @Override
+                        public void onReceipts(int pageNumber, List<GetReceiptsTapeResponse.Receipt> receipts) {
+                            receiptsRead.addAndGet(receipts.size());
+                            beginPage();
+
+                            // Чеки без подключенного владельца уходят в буфер до его подключения
+                            Map<Boolean, List<GetReceiptsTapeResponse.Receipt>> byAttribution = receipts.stream()
+                                    .collect(Collectors.partitioningBy(
+                                            r -> routeToConnectedPhone(r, connectedPhones) != null));
+
+                            receiptService.saveReceiptsGrouped(
+                                            byAttribution.get(true),
+                                            r -> routeToConnectedPhone(r, connectedPhones),
+                                            userIdCache)
+                                    .forEach((phone, result) -> pageResults.merge(phone, result, SaveReceiptsResult::plus));
+                            tapeBufferService.append(byAttribution.get(false));
+                        }
+
+                        @Override
+                        public void onPageEnd(ReceiptTapeReader.TapePage page) {
+                            beginPage();
+                            if (page.nextMarker() != null) {
+                                markerService.saveTapeMarker(page.nextMarker());
+                            }
+                            TransactionStatus status = pageTransaction;
+                            pageTransaction = null;
+                            transactionManager.commit(status);
+                            log.debug("Порция {} ленты чеков с маркером {} записана", page.number(), page.marker());
+
+                            pageResults.forEach((phone, result) -> resultsByPhone.merge(phone, result, SaveReceiptsResult::plus));
+                            pageResults.clear();
+                        }
+
+                        private void beginPage() {
+                            if (pageTransaction == null) {
+                                pageTransaction = transactionManager.getTransaction(transactionTemplate);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure() {
+                            if (pageTransaction != null) {
+                                transactionManager.rollback(pageTransaction);
+                                pageTransaction = null;
+                            }
+                        }
+                    });
+
+            if (readResult.hasMore()) {
+                log.info("Проход остановлен после {} порций, осталось около {}, продолжим в следующем запуске",
+                        readResult.pages(), readResult.remainingPolls());
+            }
+
+            // Пользователи, подключившиеся во время прохода, могли не застать свои чеки в буфере
+            Set<String> connectedDuringRun = loadConnectedPhones();
+            connectedDuringRun.removeAll(connectedPhones);
+            connectedDuringRun.forEach(phone -> resultsByPhone.merge(
+                    phone, tapeBufferService.backfill(phone), SaveReceiptsResult::plus));
+        } finally {
+            // Чеки зафиксированных порций уже не будут прочитаны повторно (маркер сдвинут),
+            // поэтому уведомляем о них и тогда, когда проход прервался ошибкой
+            resultsByPhone.forEach(this::notifyNewReceiptsSafely);
+        }
+
+        log.info("Лента чеков прочитана: {} порций, новые чеки у {} пользователей",
+                readResult.pages(), resultsByPhone.size());
+        return new TapeRunResult(readResult.pages(), receiptsRead.get(), readResult.remainingPolls(),
+                readResult.hasMore(), resultsByPhone);
+    }
+
+    private Set<String> loadConnectedPhones() {
+        return bindingStatusRepository.findAll().stream()
+                .map(UserBindingStatus::getPhoneNumber)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private String routeToConnectedPhone(GetReceiptsTapeResponse.Receipt receipt, Set<String> connectedPhones) {
+        if (receipt.getUserIdentifier() != null && connectedPhones.contains(receipt.getUserIdentifier())) {
+            return receipt.getUserIdentifier();
+        }
+        if (receipt.getPhone() != null && connectedPhones.contains(receipt.getPhone())) {
+            return receipt.getPhone();
+        }
+        return null;
+    }
+
+    private void notifyNewReceiptsSafely(String phone, SaveReceiptsResult result) {
+        try {
+            notifyNewReceipts(phone, result);
+        } catch (RuntimeException e) {
+            log.error("Не удалось отправить уведомление о новых чеках для {}: {}", phone, e.getMessage(), e);
+        }
+    }
+
+    private void notifyNewReceipts(String phone, SaveReceiptsResult result) {
+        if (!result.hasNewReceipts()) {
+            return;
+        }
+
+        log.info("Синхронизировано {} новых чеков для {} на сумму {}",
+                result.count(), phone, result.getTotalSumFormatted());
+
+        // WebSocket уведомление
+        webSocketHandler.sendNewReceiptsNotification(phone, result.count(), result.getTotalSumFormatted());
+
+        // Push-уведомление
+        autoNotificationService.sendNewReceiptsNotification(phone, result.count(), result.getTotalSumFormatted());
+    }
+}
@@ -0,0 +1,223 @@
+package org.example.mcoService.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.client.McoApiClient;
+import org.example.mcoService.config.McoProperties;
+import org.example.mcoService.dto.response.GetReceiptsTapeResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Конвейерное чтение ленты чеков.
+ * Порция N+1 запрашивается в ФНС сразу, как только известен NextMarker порции N,
+ * пока порция N еще разбирается и пишется в БД. Очередь ограничена
+ * {@code mco.tape.prefetch-chunks}: если запись отстает, загрузчик ждет.
+ * При {@code mco.tape.stream-responses} порция не собирается в памяти целиком:
+ * загрузчик сам дочитывает ответ и кладет чеки в очередь пачками,
+ * см. {@link org.example.mcoService.client.ReceiptTapeStreamReader}.
+ */
+@Slf4j
+@Component
+public class ReceiptTapeReader {
+
+    private final McoApiClient apiClient;
+    private final McoProperties.Tape tapeProperties;
+    private final ExecutorService fetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "receipt-tape-fetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReceiptTapeReader(McoApiClient apiClient, McoProperties properties) {
+        this.apiClient = apiClient;
+        this.tapeProperties = properties.getTape();
+    }
+
+    /**
+     * Порция ленты.
+     *
+     * @param number   номер порции в текущем проходе (с 1)
+     * @param marker   маркер, с которым порция запрошена
+     * @param response ответ ФНС; при потоковом чтении - без списка чеков, они уже переданы пачками
+     */
+    public record TapePage(int number, String marker, GetReceiptsTapeResponse response) {
+
+        public String nextMarker() {
+            String nextMarker = response.getNextMarker();
+            return nextMarker == null || nextMarker.isEmpty() ? null : nextMarker;
+        }
+
+        public boolean hasMore() {
+            Long remainingPolls = response.getTotalExpectedRemainingPolls();
+            return nextMarker() != null && remainingPolls != null && remainingPolls > 0;
+        }
+    }
+
+    /**
+     * Итог прохода.
+     *
+     * @param pages          сколько порций обработано
+     * @param hasMore        остались ли порции после лимита прохода
+     * @param remainingPolls TotalExpectedRemainingPolls последней порции
+     */
+    public record ReadResult(int pages, boolean hasMore, long remainingPolls) {
+    }
+
+    /**
+     * Обработчик ленты. Вызывается в потоке {@link #read} строго по порядку:
+     * пачки чеков порции, затем ее завершение.
+     */
+    public interface PageHandler {
+
+        /** Очередная пачка чеков порции */
+        void onReceipts(int pageNumber, List<GetReceiptsTapeResponse.Receipt> receipts);
+
+        /** Все чеки порции переданы - можно фиксировать ее маркер */
+        void onPageEnd(TapePage page);
+
+        /** Проход прерван ошибкой: незавершенную порцию нужно откатить */
+        default void onFailure() {
+        }
+    }
+
+    /** Элемент очереди: пачка чеков, конец порции, ошибка загрузки или конец ленты */
+    private record Slot(int pageNumber, List<GetReceiptsTapeResponse.Receipt> receipts,
+                        TapePage page, RuntimeException error) {
+        static final Slot END = new Slot(0, null, null, null);
+
+        static Slot receipts(int pageNumber, List<GetReceiptsTapeResponse.Receipt> receipts) {
+            return new Slot(pageNumber, receipts, null, null);
+        }
+
+        static Slot pageEnd(TapePage page) {
+            return new Slot(page.number(), null, page, null);
+        }
+
+        static Slot error(RuntimeException error) {
+            return new Slot(0, null, null, error);
+        }
+    }
+
+    /**
+     * Прочитать ленту от маркера, передавая чеки и порции обработчику по порядку в вызывающем потоке.
+     * Ошибка загрузки или обработчика прерывает проход; порции после нее не обрабатываются.
+     *
+     * @param startMarker маркер начала
+     * @param maxPages    сколько порций прочитать не более
+     * @param pageHandler обработчик (сохранение чеков и маркера)
+     */
+    public ReadResult read(String startMarker, int maxPages, PageHandler pageHandler) {
+        BlockingQueue<Slot> queue = new ArrayBlockingQueue<>(Math.max(1, tapeProperties.getPrefetchChunks()));
+        AtomicBoolean stopped = new AtomicBoolean(false);
+
+        Future<?> producer = fetchExecutor.submit(() -> fetchPages(startMarker, maxPages, queue, stopped));
+
+        int pages = 0;
+        boolean hasMore = false;
+        long remainingPolls = 0;
+        boolean completed = false;
+        try {
+            while (true) {
+                Slot slot = queue.take();
+                if (slot == Slot.END) {
+                    break;
+                }
+                if (slot.error() != null) {
+                    throw slot.error();
+                }
+
+                if (slot.receipts() != null) {
+                    pageHandler.onReceipts(slot.pageNumber(), slot.receipts());
+                    continue;
+                }
+
+                pageHandler.onPageEnd(slot.page());
+                pages = slot.page().number();
+                hasMore = slot.page().hasMore();
+                Long polls = slot.page().response().getTotalExpectedRemainingPolls();
+                remainingPolls = polls != null ? polls : 0;
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Прервано чтение ленты чеков", e);
+        } finally {
+            stopped.set(true);
+            producer.cancel(true);
+            if (!completed) {
+                pageHandler.onFailure();
+            }
+        }
+
+        return new ReadResult(pages, hasMore && pages >= maxPages, remainingPolls);
+    }
+
+    private void fetchPages(String startMarker, int maxPages, BlockingQueue<Slot> queue, AtomicBoolean stopped) {
+        String marker = startMarker;
+        try {
+            for (int number = 1; number <= maxPages && !stopped.get(); number++) {
+                log.debug("Загрузка порции {} ленты чеков с маркером {}", number, marker);
+
+                TapePage page;
+                try {
+                    page = new TapePage(number, marker, fetchPage(number, marker, queue));
+                } catch (RuntimeException e) {
+                    queue.put(Slot.error(e));
+                    return;
+                }
+
+                // put блокируется, пока запись в БД не освободит место
+                queue.put(Slot.pageEnd(page));
+
+                if (!page.hasMore()) {
+                    break;
+                }
+                marker = page.nextMarker();
+            }
+            queue.put(Slot.END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.debug("Загрузка ленты чеков остановлена");
+        }
+    }
+
+    private GetReceiptsTapeResponse fetchPage(int number, String marker,
+                                              BlockingQueue<Slot> queue) throws InterruptedException {
+        if (tapeProperties.isStreamResponses()) {
+            // Ответ дочитывается в этом потоке: put притормаживает чтение из сокета, пока запись отстает
+            return apiClient.streamReceiptsSync(marker, tapeProperties.getStreamChunkSize(),
+                    chunk -> put(queue, Slot.receipts(number, chunk)));
+        }
+
+        GetReceiptsTapeResponse response = apiClient.getReceiptsSync(marker);
+        if (response.getReceipts() != null && !response.getReceipts().isEmpty()) {
+            queue.put(Slot.receipts(number, response.getReceipts()));
+        }
+        return response;
+    }
+
+    /**
+     * Положить пачку в очередь из обработчика разбора ответа. Остановка прохода прерывает ожидание.
+     */
+    private static void put(BlockingQueue<Slot> queue, Slot slot) {
+        try {
+            queue.put(slot);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Прервано чтение ленты чеков", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.mcoService.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.mcoService.entity.TapeCheckpoint;
+import org.example.mcoService.repository.TapeCheckpointRepository;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Хранилище маркеров лент МЧО.
+ * Источник истины - таблица tape_checkpoints, Redis используется только как
+ * read-through кэш: вытеснение ключа не приводит к перечитыванию ленты из ФНС.
+ * Ключ в Redis совпадает с ключом ленты.
+ * Новый маркер попадает в кэш только после коммита, а чтение из БД кладет значение
+ * лишь в пустой ключ, поэтому прочитанный до коммита старый маркер не затирает новый.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TapeCheckpointService {
+
+    private final TapeCheckpointRepository checkpointRepository;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private static final Duration CACHE_TTL = Duration.ofDays(7);
+
+    /**
+     * Получить маркер ленты.
+     *
+     * @param tapeKey       ключ ленты
+     * @param defaultMarker маркер, если позиция еще не сохранялась
+     */
+    public String getMarker(String tapeKey, String defaultMarker) {
+        String cached = readCache(tapeKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        return checkpointRepository.findById(tapeKey)
+                .map(checkpoint -> {
+                    writeCacheIfAbsent(tapeKey, checkpoint.getMarker());
+                    return checkpoint.getMarker();
+                })
+                .orElse(defaultMarker);
+    }
+
+    /**
+     * Сохранить маркер ленты. Если вызвано внутри транзакции, маркер фиксируется
+     * вместе с ней, а кэш обновляется только после коммита. До коммита в кэше
+     * остается прежний маркер, который совпадает с зафиксированным в БД.
+     */
+    @Transactional
+    public void saveMarker(String tapeKey, String marker) {
+        checkpointRepository.save(TapeCheckpoint.builder()
+                .tapeKey(tapeKey)
+                .marker(marker)
+                .build());
+
+        afterCommit(() -> writeCache(tapeKey, marker));
+        log.debug("Сохранен маркер ленты {}: {}", tapeKey, marker);
+    }
+
+    @Transactional
+    public void resetMarker(String tapeKey) {
+        if (checkpointRepository.existsById(tapeKey)) {
+            checkpointRepository.deleteById(tapeKey);
+        }
+        afterCommit(() -> evictCache(tapeKey));
+        log.debug("Маркер ленты {} сброшен", tapeKey);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private String readCache(String tapeKey) {
+        try {
+            return redisTemplate.opsForValue().get(tapeKey);
+        } catch (Exception e) {
+            log.warn("Не удалось прочитать маркер {} из Redis: {}", tapeKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCache(String tapeKey, String marker) {
+        try {
+            redisTemplate.opsForValue().set(tapeKey, marker, CACHE_TTL);
+        } catch (Exception e) {
+            log.warn("Не удалось записать маркер {} в Redis: {}", tapeKey, e.getMessage());
+        }
+    }
+
+    private void writeCacheIfAbsent(String tapeKey, String marker) {
+        try {
+            redisTemplate.opsForValue().setIfAbsent(tapeKey, marker, CACHE_TTL);
+        } catch (Exception e) {
+            log.warn("Не удалось записать маркер {} в Redis: {}", tapeKey, e.getMessage());
+        }
+    }
+
+    private void evictCache(String tapeKey) {
+        try {
+            redisTemplate.delete(tapeKey);
+        } catch (Exception e) {
+            log.warn("Не удалось удалить маркер {} из Redis: {}", tapeKey, e.getMessage());
+        }
+    }
+}
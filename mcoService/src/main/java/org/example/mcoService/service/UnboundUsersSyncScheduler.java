@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.common.repository.UserRepository;
 import org.example.mcoService.dto.response.GetUnboundPartnerResponse;
 import org.example.common.repository.UserBindingStatusRepository;
+import org.example.mcoService.repository.ReceiptJdbcRepository;
 import org.example.mcoService.repository.ReceiptRepository;
 import org.example.mcoService.websocket.BindStatusWebSocketHandler;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -22,6 +23,7 @@ public class UnboundUsersSyncScheduler {
     private final UserRepository userRepository;
     private final UserBindingStatusRepository bindingStatusRepository;
     private final ReceiptRepository receiptRepository;
+    private final ReceiptJdbcRepository receiptJdbcRepository;
     private final McoService mcoService;
     private final UnboundMarkerService unboundMarkerService;
     private final AutoNotificationService autoNotificationService;
@@ -164,8 +166,8 @@ public class UnboundUsersSyncScheduler {
             do {
                 batchNumber++;
 
-                // Удаляем пакет чеков
-                batchDeleted = receiptRepository.deleteBatchByUserId(userId, BATCH_SIZE);
+                // Удаляем пакет чеков (сводка пользователя уменьшается в той же транзакции)
+                batchDeleted = receiptJdbcRepository.deleteBatchByUserId(userId, BATCH_SIZE);
                 totalDeleted += batchDeleted;
 
                 log.debug("Пакет {}: удалено {} чеков, всего удалено: {}/{}",
@@ -216,7 +218,7 @@ public class UnboundUsersSyncScheduler {
                 batchNumber++;
 
                 // Удаляем пакет чеков
-                batchDeleted = receiptRepository.deleteBatchByUserIdentifier(userIdentifier, BATCH_SIZE);
+                batchDeleted = receiptJdbcRepository.deleteBatchByUserIdentifier(userIdentifier, BATCH_SIZE);
                 totalDeleted += batchDeleted;
 
                 log.debug("Пакет {}: удалено {} чеков, всего удалено: {}/{}",
@@ -0,0 +1,41 @@
+package org.example.mcoService.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ограниченный LRU-кэш идентификатор пользователя → userId на время одного прохода синхронизации.
+ * Создается на каждый проход, поэтому не требует инвалидации и синхронизации.
+ */
+public class UserIdCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final Map<String, UUID> cache;
+
+    public UserIdCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public UserIdCache(int maxSize) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UUID> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public UUID get(String identifier) {
+        return cache.get(identifier);
+    }
+
+    public void put(String identifier, UUID userId) {
+        cache.put(identifier, userId);
+    }
+
+    public int size() {
+        return cache.size();
+    }
+}
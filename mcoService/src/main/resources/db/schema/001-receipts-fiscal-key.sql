@@ -0,0 +1,40 @@
+-- Уникальный фискальный ключ чека.
+-- На нем держится пакетная вставка INSERT ... ON CONFLICT DO NOTHING (ReceiptJdbcRepository):
+-- без подходящего уникального ограничения PostgreSQL отклоняет такой INSERT.
+-- Перед созданием ограничения удаляются накопившиеся дубли, остается самый ранний чек.
+
+DO $$
+BEGIN
+    -- Обычная таблица receipts
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('receipts') AND relkind = 'r')
+            AND NOT EXISTS (SELECT 1 FROM pg_constraint
+                            WHERE conrelid = to_regclass('receipts') AND conname = 'uk_receipts_fiscal_key') THEN
+        DELETE FROM receipts r
+        USING receipts d
+        WHERE r.fiscal_sign = d.fiscal_sign
+          AND r.fiscal_document_number = d.fiscal_document_number
+          AND r.fiscal_drive_number = d.fiscal_drive_number
+          AND (r.created_at, r.id) > (d.created_at, d.id);
+
+        ALTER TABLE receipts ADD CONSTRAINT uk_receipts_fiscal_key
+            UNIQUE (fiscal_sign, fiscal_document_number, fiscal_drive_number);
+    END IF;
+
+    -- Секционированная receipts (mco.partitioning.enabled): ключ секции входит в ограничение
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('receipts') AND relkind = 'p')
+            AND NOT EXISTS (SELECT 1 FROM pg_constraint
+                            WHERE conrelid = to_regclass('receipts') AND conname = 'uk_receipts_fiscal_key_date') THEN
+        DELETE FROM receipts r
+        USING receipts d
+        WHERE r.fiscal_sign = d.fiscal_sign
+          AND r.fiscal_document_number = d.fiscal_document_number
+          AND r.fiscal_drive_number = d.fiscal_drive_number
+          AND r.receipt_date_time = d.receipt_date_time
+          AND (r.created_at, r.id) > (d.created_at, d.id);
+
+        ALTER TABLE receipts ADD CONSTRAINT uk_receipts_fiscal_key_date
+            UNIQUE (fiscal_sign, fiscal_document_number, fiscal_drive_number, receipt_date_time);
+    END IF;
+END
+$$
+@@
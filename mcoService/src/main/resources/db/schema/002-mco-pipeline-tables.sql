@@ -0,0 +1,87 @@
+-- Служебные таблицы конвейера чеков.
+-- Определения совпадают с сущностями, иначе ddl-auto: validate не даст сервису стартовать.
+
+-- Маркеры лент МЧО (TapeCheckpoint)
+CREATE TABLE IF NOT EXISTS tape_checkpoints (
+    tape_key   VARCHAR(100) PRIMARY KEY,
+    marker     TEXT         NOT NULL,
+    updated_at TIMESTAMP    NOT NULL
+)
+@@
+
+-- Чеки ленты без привязанного пользователя (ReceiptTapeBufferEntry)
+CREATE TABLE IF NOT EXISTS receipt_tape_buffer (
+    id              UUID PRIMARY KEY,
+    user_identifier VARCHAR(20),
+    phone           VARCHAR(20),
+    email           VARCHAR(255),
+    receive_date    VARCHAR(40) NOT NULL,
+    source_code     VARCHAR(50),
+    raw_json        BYTEA       NOT NULL,
+    buffered_at     TIMESTAMP   NOT NULL
+)
+@@
+
+CREATE INDEX IF NOT EXISTS idx_receipt_tape_buffer_identifier ON receipt_tape_buffer (user_identifier)
+@@
+
+CREATE INDEX IF NOT EXISTS idx_receipt_tape_buffer_phone ON receipt_tape_buffer (phone)
+@@
+
+CREATE INDEX IF NOT EXISTS idx_receipt_tape_buffer_buffered_at ON receipt_tape_buffer (buffered_at)
+@@
+
+-- Чеки, которые не удалось сохранить (ReceiptDeadLetter)
+CREATE TABLE IF NOT EXISTS receipt_dead_letters (
+    id              UUID PRIMARY KEY,
+    user_identifier VARCHAR(20),
+    phone           VARCHAR(20),
+    email           VARCHAR(255),
+    receive_date    VARCHAR(40),
+    source_code     VARCHAR(50),
+    raw_json        BYTEA,
+    stage           VARCHAR(20)  NOT NULL,
+    error_class     VARCHAR(255) NOT NULL,
+    error_message   TEXT,
+    attempts        INTEGER      NOT NULL,
+    created_at      TIMESTAMP    NOT NULL,
+    last_attempt_at TIMESTAMP    NOT NULL
+)
+@@
+
+CREATE INDEX IF NOT EXISTS idx_receipt_dead_letters_attempt ON receipt_dead_letters (attempts, last_attempt_at)
+@@
+
+-- Агрегаты чеков пользователя (UserReceiptStats)
+CREATE TABLE IF NOT EXISTS user_receipt_stats (
+    user_id             UUID PRIMARY KEY,
+    receipt_count       BIGINT         NOT NULL,
+    total_amount        NUMERIC(19, 2) NOT NULL,
+    oldest_receipt_date TIMESTAMP,
+    newest_receipt_date TIMESTAMP,
+    updated_at          TIMESTAMP      NOT NULL
+)
+@@
+
+-- Дневные суммы трат (ReceiptDailyRollup)
+CREATE TABLE IF NOT EXISTS receipt_daily_rollup (
+    user_id       UUID           NOT NULL,
+    day           DATE           NOT NULL,
+    source_code   VARCHAR(50)    NOT NULL,
+    user_inn      VARCHAR(12)    NOT NULL,
+    receipt_count BIGINT         NOT NULL,
+    total_amount  NUMERIC(19, 2) NOT NULL,
+    updated_at    TIMESTAMP      NOT NULL,
+    PRIMARY KEY (user_id, day, source_code, user_inn)
+)
+@@
+
+-- Индекс keyset-пагинации чеков пользователя; для секционированной receipts его создает ReceiptPartitionManager
+DO $$
+BEGIN
+    IF to_regclass('receipts') IS NOT NULL THEN
+        CREATE INDEX IF NOT EXISTS idx_receipts_user_date_id ON receipts (user_id, receipt_date_time DESC, id);
+    END IF;
+END
+$$
+@@
@@ -0,0 +1,36 @@
+-- Уникальное содержимое записи receipt_dead_letters.
+-- Лента может выдать тот же ошибочный чек повторно (например, при перечитывании с начала):
+-- ReceiptJdbcRepository вставляет записи с ON CONFLICT (payload_hash) DO NOTHING.
+-- Формула хэша совпадает с ReceiptJdbcRepository.payloadHash.
+-- Перед созданием ограничения удаляются накопившиеся дубли, остается самая ранняя запись.
+
+DO $$
+BEGIN
+    IF to_regclass('receipt_dead_letters') IS NOT NULL
+            AND NOT EXISTS (SELECT 1 FROM pg_constraint
+                            WHERE conrelid = to_regclass('receipt_dead_letters')
+                              AND conname = 'uk_receipt_dead_letters_payload') THEN
+        ALTER TABLE receipt_dead_letters ADD COLUMN IF NOT EXISTS payload_hash VARCHAR(64);
+
+        UPDATE receipt_dead_letters
+        SET payload_hash = encode(sha256(
+                convert_to(concat_ws(E'\n',
+                        COALESCE(user_identifier, ''),
+                        COALESCE(phone, ''),
+                        COALESCE(receive_date, ''),
+                        COALESCE(source_code, ''),
+                        ''), 'UTF8')
+                || COALESCE(raw_json, ''::bytea)), 'hex')
+        WHERE payload_hash IS NULL;
+
+        DELETE FROM receipt_dead_letters l
+        USING receipt_dead_letters d
+        WHERE l.payload_hash = d.payload_hash
+          AND (l.created_at, l.id) > (d.created_at, d.id);
+
+        ALTER TABLE receipt_dead_letters ALTER COLUMN payload_hash SET NOT NULL;
+        ALTER TABLE receipt_dead_letters ADD CONSTRAINT uk_receipt_dead_letters_payload UNIQUE (payload_hash);
+    END IF;
+END
+$$
+@@
@@ -238,6 +238,10 @@ public class UserController {
             log.info("🧾 Запрос чеков пользователя: {}, page={}, size={}", userId, page, size);
             UserReceiptsResponse receipts = userService.getUserReceipts(userId, page, size);
             return ResponseEntity.ok(ApiResponse.success(receipts));
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Некорректная страница чеков пользователя {}: {}", userId, e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             log.error("❌ Ошибка получения чеков пользователя {}: {}", userId, e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -21,7 +21,6 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -30,6 +29,9 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class UserService {
+
+    /** Тот же предел, что у страницы чеков в mcoService: больший размер он отклоняет */
+    public static final int MAX_RECEIPTS_PAGE_SIZE = 100;
     
     private final UserRepository userRepository;
     private final UserBindingStatusRepository bindingStatusRepository;
@@ -246,56 +248,32 @@ public class UserService {
      * Получить чеки пользователя с пагинацией
      */
     public UserReceiptsResponse getUserReceipts(UUID userId, int page, int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Номер страницы не может быть отрицательным");
+        }
+        if (size < 1 || size > MAX_RECEIPTS_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + MAX_RECEIPTS_PAGE_SIZE);
+        }
+
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("Пользователь не найден: " + userId));
         
-        List<ReceiptData> allReceipts = fetchUserReceipts(userId);
-        
-        // Пагинация в памяти (можно улучшить, делая запрос с пагинацией в mcoService)
-        int start = page * size;
-        int end = Math.min(start + size, allReceipts.size());
-        
-        List<UserReceiptsResponse.ReceiptDetail> receipts = allReceipts.stream()
-                .skip(start)
-                .limit(size)
+        // Сводка ведется в mcoService при записи чеков, поэтому все чеки пользователя не загружаются
+        UserReceiptsResponse.ReceiptsSummary summary = fetchReceiptsSummary(userId);
+
+        List<UserReceiptsResponse.ReceiptDetail> receipts = fetchUserReceipts(userId, page, size).stream()
                 .map(this::mapToReceiptDetail)
                 .collect(Collectors.toList());
-        
-        // Расчет статистики
-        BigDecimal totalAmount = allReceipts.stream()
-                .map(r -> r.totalSum)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal averageAmount = allReceipts.isEmpty() 
-                ? BigDecimal.ZERO 
-                : totalAmount.divide(BigDecimal.valueOf(allReceipts.size()), 2, RoundingMode.HALF_UP);
-        
-        LocalDateTime oldestDate = allReceipts.stream()
-                .map(r -> r.receiptDateTime)
-                .min(LocalDateTime::compareTo)
-                .orElse(null);
-        
-        LocalDateTime newestDate = allReceipts.stream()
-                .map(r -> r.receiptDateTime)
-                .max(LocalDateTime::compareTo)
-                .orElse(null);
-        
-        UserReceiptsResponse.ReceiptsSummary summary = UserReceiptsResponse.ReceiptsSummary.builder()
-                .totalCount(allReceipts.size())
-                .totalAmount(totalAmount)
-                .averageAmount(averageAmount)
-                .oldestReceiptDate(oldestDate)
-                .newestReceiptDate(newestDate)
-                .build();
-        
-        int totalPages = (int) Math.ceil((double) allReceipts.size() / size);
-        
+
+        long totalElements = summary.getTotalCount();
+        int totalPages = (int) Math.ceil((double) totalElements / size);
+
         UserReceiptsResponse.PaginationInfo pagination = UserReceiptsResponse.PaginationInfo.builder()
                 .currentPage(page)
                 .pageSize(size)
-                .totalElements(allReceipts.size())
+                .totalElements(totalElements)
                 .totalPages(totalPages)
-                .hasNext(end < allReceipts.size())
+                .hasNext((long) (page + 1) * size < totalElements)
                 .hasPrevious(page > 0)
                 .build();
         
@@ -320,11 +298,11 @@ public class UserService {
     }
 
     /**
-     * Получить чеки пользователя из mcoService
+     * Получить страницу чеков пользователя из mcoService
      */
-    private List<ReceiptData> fetchUserReceipts(UUID userId) {
+    private List<ReceiptData> fetchUserReceipts(UUID userId, int page, int size) {
         try {
-            String url = mcoServiceUrl + "/api/mco/receipts/user/" + userId;
+            String url = mcoServiceUrl + "/api/mco/receipts/user/" + userId + "?page=" + page + "&size=" + size;
             ReceiptData[] receipts = restTemplate.getForObject(url, ReceiptData[].class);
             return receipts != null ? Arrays.asList(receipts) : Collections.emptyList();
         } catch (Exception e) {
@@ -333,6 +311,27 @@ public class UserService {
         }
     }
 
+    /**
+     * Получить сводку по чекам пользователя из mcoService
+     */
+    private UserReceiptsResponse.ReceiptsSummary fetchReceiptsSummary(UUID userId) {
+        try {
+            String url = mcoServiceUrl + "/api/mco/receipts/user/" + userId + "/summary";
+            UserReceiptsResponse.ReceiptsSummary summary =
+                    restTemplate.getForObject(url, UserReceiptsResponse.ReceiptsSummary.class);
+            if (summary != null) {
+                return summary;
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось получить сводку по чекам пользователя {}: {}", userId, e.getMessage());
+        }
+        return UserReceiptsResponse.ReceiptsSummary.builder()
+                .totalCount(0)
+                .totalAmount(BigDecimal.ZERO)
+                .averageAmount(BigDecimal.ZERO)
+                .build();
+    }
+
     /**
      * Получить количество чеков пользователя
      */